@@ -22,8 +22,19 @@ public @interface RateLimit {
 	 */
 	KeyType keyType() default KeyType.IP;
 
+	/**
+	 * Counting algorithm (EXACT_LOG, SLIDING_WINDOW_COUNTER or GCRA)
+	 */
+	Algorithm algorithm() default Algorithm.EXACT_LOG;
+
 	enum KeyType {
 		IP,      // Rate limit by IP address
 		EMAIL    // Rate limit by email from request body
 	}
+
+	enum Algorithm {
+		EXACT_LOG,               // One entry per attempt, exact sliding window, O(attempts) memory per key
+		SLIDING_WINDOW_COUNTER,  // Previous + current fixed window counters weighted by overlap, O(1) memory per key
+		GCRA                     // Generic cell rate algorithm (token bucket), one timestamp per key
+	}
 }
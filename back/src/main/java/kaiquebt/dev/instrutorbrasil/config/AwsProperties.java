@@ -19,5 +19,9 @@ public class AwsProperties {
         private Integer presignedUrlExpirationMinutes;
         private Integer maxFileSizeMb;
         private String endpointOverride;
+        // S3 calls in flight at once, matches the S3 client's 50-connection pool
+        private int maxConcurrency = 50;
+        // How long a call waits for a slot before the request is answered with 503
+        private long acquireTimeoutMs = 1000;
     }
 }
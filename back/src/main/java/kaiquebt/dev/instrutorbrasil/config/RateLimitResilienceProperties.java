@@ -0,0 +1,55 @@
+package kaiquebt.dev.instrutorbrasil.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Circuit breaker settings for the Redis-backed rate limit storages
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit.resilience")
+public class RateLimitResilienceProperties {
+
+	/**
+	 * Wrap Redis storages in the circuit breaker, when false Redis errors propagate and startup fails without Redis
+	 */
+	private boolean enabled = true;
+
+	/**
+	 * What to do while Redis is unavailable
+	 */
+	private FailMode failMode = FailMode.LOCAL;
+
+	/**
+	 * Consecutive failed or slow calls that open the circuit
+	 */
+	private int failureThreshold = 5;
+
+	/**
+	 * Calls slower than this count as failures
+	 */
+	private long slowCallMillis = 200;
+
+	/**
+	 * Calls still running after this are abandoned, answered by the fail mode and count as failures
+	 */
+	private long timeoutMillis = 500;
+
+	/**
+	 * How long the circuit stays open before a probe call is let through
+	 */
+	private long openMillis = 10000;
+
+	/**
+	 * Maximum number of keys counted locally during an outage and replayed to Redis on recovery
+	 */
+	private int maxReplayKeys = 10000;
+
+	public enum FailMode {
+		LOCAL,   // Count in memory on this instance, replay to Redis when it recovers
+		OPEN,    // Allow every request
+		CLOSED   // Reject every rate-limited request
+	}
+}
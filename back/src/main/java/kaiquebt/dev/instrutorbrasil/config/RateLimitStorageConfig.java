@@ -1,9 +1,12 @@
 package kaiquebt.dev.instrutorbrasil.config;
 
+import kaiquebt.dev.instrutorbrasil.service.storage.CompactRateLimitStorage;
+import kaiquebt.dev.instrutorbrasil.service.storage.HybridRateLimitStorage;
 import kaiquebt.dev.instrutorbrasil.service.storage.InMemoryRateLimitStorage;
 import kaiquebt.dev.instrutorbrasil.service.storage.RateLimitStorage;
 import kaiquebt.dev.instrutorbrasil.service.storage.RedisRateLimitStorage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -20,13 +23,34 @@ public class RateLimitStorageConfig {
 	/**
 	 * Create Redis-based rate limit storage when storage-type is REDIS
 	 * Requires Redis to be configured in application.yml
-	 * If Redis is not available, application will fail to start
+	 * If Redis is not available, application will fail to start unless app.rate-limit.resilience is enabled
 	 */
 	@Bean
 	@ConditionalOnProperty(name = "app.rate-limit.storage-type", havingValue = "REDIS")
-	public RateLimitStorage redisRateLimitStorage(RedisTemplate<String, String> redisTemplate) {
+	public RateLimitStorage redisRateLimitStorage(
+			RedisTemplate<String, String> redisTemplate,
+			RateLimitResilienceProperties resilience) {
 		log.info("Using Redis-based rate limiting (distributed) - storage-type: REDIS");
-		return new RedisRateLimitStorage(redisTemplate);
+		RedisRateLimitStorage storage = new RedisRateLimitStorage(redisTemplate);
+		storage.setFailFast(!resilience.isEnabled());
+		return storage;
+	}
+
+	/**
+	 * Create two-tier rate limit storage when storage-type is HYBRID
+	 * Sliding window counters are counted locally and flushed to Redis in batches,
+	 * Redis is only called synchronously for keys close to their limit
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "app.rate-limit.storage-type", havingValue = "HYBRID")
+	public RateLimitStorage hybridRateLimitStorage(
+			RedisTemplate<String, String> redisTemplate,
+			RateLimitResilienceProperties resilience,
+			@Value("${app.rate-limit.hybrid.local-ratio:0.5}") double localRatio) {
+		log.info("Using hybrid local + Redis rate limiting (distributed, approximate) - storage-type: HYBRID");
+		HybridRateLimitStorage storage = new HybridRateLimitStorage(redisTemplate, localRatio);
+		storage.setFailFast(!resilience.isEnabled());
+		return storage;
 	}
 
 	/**
@@ -39,4 +63,15 @@ public class RateLimitStorageConfig {
 		log.info("Using in-memory rate limiting (single instance) - storage-type: MEMORY");
 		return new InMemoryRateLimitStorage();
 	}
+
+	/**
+	 * Create fixed-memory rate limit storage when storage-type is COMPACT
+	 * Single instance like MEMORY, but memory is capped by max-keys and never grows under bursts
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "app.rate-limit.storage-type", havingValue = "COMPACT")
+	public RateLimitStorage compactRateLimitStorage(@Value("${app.rate-limit.compact.max-keys:65536}") int maxKeys) {
+		log.info("Using compact fixed-memory rate limiting (single instance) - storage-type: COMPACT");
+		return new CompactRateLimitStorage(maxKeys);
+	}
 }
@@ -0,0 +1,45 @@
+package kaiquebt.dev.instrutorbrasil.config;
+
+import kaiquebt.dev.instrutorbrasil.repository.RefreshTokenRepository;
+import kaiquebt.dev.instrutorbrasil.service.token.JpaRefreshTokenStore;
+import kaiquebt.dev.instrutorbrasil.service.token.RedisRefreshTokenStore;
+import kaiquebt.dev.instrutorbrasil.service.token.RefreshTokenStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Configuration for refresh token storage
+ * Explicitly configured via app.refresh-token.storage-type property
+ */
+@Configuration
+@Slf4j
+public class RefreshTokenStoreConfig {
+
+	/**
+	 * Create Postgres-based refresh token storage when storage-type is JPA (default)
+	 * With app.token-cleanup.mode PARTITIONED rotations leave the expiry date, the partition key, untouched
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "app.refresh-token.storage-type", havingValue = "JPA", matchIfMissing = true)
+	public RefreshTokenStore jpaRefreshTokenStore(
+			RefreshTokenRepository refreshTokenRepository,
+			@Value("${app.token-cleanup.mode:CHUNKED}") String cleanupMode) {
+		log.info("Storing refresh tokens in Postgres - storage-type: JPA");
+		return new JpaRefreshTokenStore(refreshTokenRepository, "PARTITIONED".equalsIgnoreCase(cleanupMode));
+	}
+
+	/**
+	 * Create Redis-based refresh token storage when storage-type is REDIS
+	 * Tokens expire through Redis TTLs, so Redis must be persistent or users are logged out when it restarts
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "app.refresh-token.storage-type", havingValue = "REDIS")
+	public RefreshTokenStore redisRefreshTokenStore(RedisTemplate<String, String> redisTemplate) {
+		log.info("Storing refresh tokens in Redis - storage-type: REDIS");
+		return new RedisRefreshTokenStore(redisTemplate);
+	}
+}
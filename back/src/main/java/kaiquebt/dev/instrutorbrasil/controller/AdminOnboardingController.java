@@ -13,8 +13,8 @@ import kaiquebt.dev.instrutorbrasil.dto.response.DocumentResponse;
 import kaiquebt.dev.instrutorbrasil.dto.response.MessageResponse;
 import kaiquebt.dev.instrutorbrasil.dto.response.OnboardingResponse;
 import kaiquebt.dev.instrutorbrasil.dto.response.OnboardingSummaryResponse;
-import kaiquebt.dev.instrutorbrasil.model.User;
 import kaiquebt.dev.instrutorbrasil.model.enums.OnboardingStatus;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
 import kaiquebt.dev.instrutorbrasil.service.OnboardingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -84,7 +84,7 @@ public class AdminOnboardingController {
 	})
 	public ResponseEntity<OnboardingResponse> reviewOnboarding(
 			@PathVariable Long onboardingId,
-			@AuthenticationPrincipal User reviewer,
+			@AuthenticationPrincipal AuthenticatedUser reviewer,
 			@Valid @RequestBody ReviewOnboardingRequest request) {
 		OnboardingResponse response = onboardingService.reviewOnboarding(onboardingId, reviewer, request);
 		return ResponseEntity.ok(response);
@@ -130,7 +130,7 @@ public class AdminOnboardingController {
 	})
 	public ResponseEntity<MessageResponse> reviewDocument(
 			@PathVariable Long documentId,
-			@AuthenticationPrincipal User reviewer,
+			@AuthenticationPrincipal AuthenticatedUser reviewer,
 			@Valid @RequestBody DocumentReviewRequest request) {
 		onboardingService.reviewDocument(documentId, reviewer, request);
 		return ResponseEntity.ok(new MessageResponse("Document reviewed successfully"));
@@ -0,0 +1,57 @@
+package kaiquebt.dev.instrutorbrasil.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import kaiquebt.dev.instrutorbrasil.dto.response.MessageResponse;
+import kaiquebt.dev.instrutorbrasil.dto.response.RateLimitStatsResponse;
+import kaiquebt.dev.instrutorbrasil.service.RateLimitService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/admin/rate-limit")
+@RequiredArgsConstructor
+@Tag(name = "Admin - Rate Limiting", description = "Admin APIs for inspecting rate limiting")
+public class AdminRateLimitController {
+
+	private final RateLimitService rateLimitService;
+
+	@GetMapping
+	@PreAuthorize("hasRole('ADMIN')")
+	@Operation(
+		summary = "Get rate limit statistics",
+		description = "Storage in use, live keys, check latency, allowed and rejected checks per endpoint " +
+				"and the most throttled keys on this instance. Counters are kept since startup.",
+		security = @SecurityRequirement(name = "bearer-jwt")
+	)
+	@ApiResponses(value = {
+		@ApiResponse(responseCode = "200", description = "Statistics retrieved successfully"),
+		@ApiResponse(responseCode = "401", description = "Unauthorized"),
+		@ApiResponse(responseCode = "403", description = "Forbidden - Admin role required")
+	})
+	public ResponseEntity<RateLimitStatsResponse> getStats(@RequestParam(defaultValue = "20") int top) {
+		return ResponseEntity.ok(rateLimitService.getStats(Math.max(0, Math.min(top, 200))));
+	}
+
+	@DeleteMapping("/heavy-hitters")
+	@PreAuthorize("hasRole('ADMIN')")
+	@Operation(
+		summary = "Reset the throttled keys",
+		description = "Clear the most throttled keys collected so far on this instance, e.g. after changing a limit.",
+		security = @SecurityRequirement(name = "bearer-jwt")
+	)
+	@ApiResponses(value = {
+		@ApiResponse(responseCode = "200", description = "Throttled keys cleared"),
+		@ApiResponse(responseCode = "401", description = "Unauthorized"),
+		@ApiResponse(responseCode = "403", description = "Forbidden - Admin role required")
+	})
+	public ResponseEntity<MessageResponse> resetHeavyHitters() {
+		rateLimitService.resetHeavyHitters();
+		return ResponseEntity.ok(new MessageResponse("Throttled keys cleared"));
+	}
+}
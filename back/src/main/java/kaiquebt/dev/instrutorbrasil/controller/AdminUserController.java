@@ -0,0 +1,58 @@
+package kaiquebt.dev.instrutorbrasil.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import kaiquebt.dev.instrutorbrasil.dto.response.MessageResponse;
+import kaiquebt.dev.instrutorbrasil.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/admin/users")
+@RequiredArgsConstructor
+@Tag(name = "Admin - Users", description = "Admin APIs for managing user accounts")
+public class AdminUserController {
+
+	private final UserService userService;
+
+	@PostMapping("/{id}/disable")
+	@PreAuthorize("hasRole('ADMIN')")
+	@Operation(
+		summary = "Disable a user account",
+		description = "Block login and refresh for the user and revoke the tokens already issued, on every instance.",
+		security = @SecurityRequirement(name = "bearer-jwt")
+	)
+	@ApiResponses(value = {
+		@ApiResponse(responseCode = "200", description = "Account disabled"),
+		@ApiResponse(responseCode = "401", description = "Unauthorized"),
+		@ApiResponse(responseCode = "403", description = "Forbidden - Admin role required"),
+		@ApiResponse(responseCode = "404", description = "User not found")
+	})
+	public ResponseEntity<MessageResponse> disableUser(@PathVariable Long id) {
+		userService.setEnabled(id, false);
+		return ResponseEntity.ok(new MessageResponse("Account disabled"));
+	}
+
+	@PostMapping("/{id}/enable")
+	@PreAuthorize("hasRole('ADMIN')")
+	@Operation(
+		summary = "Enable a user account",
+		description = "Allow the user to log in again.",
+		security = @SecurityRequirement(name = "bearer-jwt")
+	)
+	@ApiResponses(value = {
+		@ApiResponse(responseCode = "200", description = "Account enabled"),
+		@ApiResponse(responseCode = "401", description = "Unauthorized"),
+		@ApiResponse(responseCode = "403", description = "Forbidden - Admin role required"),
+		@ApiResponse(responseCode = "404", description = "User not found")
+	})
+	public ResponseEntity<MessageResponse> enableUser(@PathVariable Long id) {
+		userService.setEnabled(id, true);
+		return ResponseEntity.ok(new MessageResponse("Account enabled"));
+	}
+}
@@ -75,7 +75,7 @@ public class AuthController {
 	}
 
 	@PostMapping("/register")
-	@RateLimit(maxAttempts = 3, timeWindowSeconds = 3600, keyType = RateLimit.KeyType.IP)
+	@RateLimit(maxAttempts = 3, timeWindowSeconds = 3600, keyType = RateLimit.KeyType.IP, algorithm = RateLimit.Algorithm.SLIDING_WINDOW_COUNTER)
 	@Operation(
 		summary = "Register new user",
 		description = "Register a new user with email and password. A verification email will be sent. Rate limit: 3 attempts per hour per IP."
@@ -122,7 +122,7 @@ public class AuthController {
 	}
 
 	@PostMapping("/resend-verification")
-	@RateLimit(maxAttempts = 3, timeWindowSeconds = 3600, keyType = RateLimit.KeyType.IP)
+	@RateLimit(maxAttempts = 3, timeWindowSeconds = 3600, keyType = RateLimit.KeyType.IP, algorithm = RateLimit.Algorithm.SLIDING_WINDOW_COUNTER)
 	@RateLimit(maxAttempts = 3, timeWindowSeconds = 3600, keyType = RateLimit.KeyType.EMAIL)
 	@Operation(
 		summary = "Resend email verification",
@@ -12,7 +12,7 @@ import kaiquebt.dev.instrutorbrasil.dto.request.OnboardingRequest;
 import kaiquebt.dev.instrutorbrasil.dto.response.DocumentUploadResponse;
 import kaiquebt.dev.instrutorbrasil.dto.response.MessageResponse;
 import kaiquebt.dev.instrutorbrasil.dto.response.OnboardingResponse;
-import kaiquebt.dev.instrutorbrasil.model.User;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
 import kaiquebt.dev.instrutorbrasil.service.OnboardingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -43,7 +43,7 @@ public class OnboardingController {
 		@ApiResponse(responseCode = "409", description = "Already has active onboarding or cooldown active")
 	})
 	public ResponseEntity<OnboardingResponse> startOnboarding(
-			@AuthenticationPrincipal User user,
+			@AuthenticationPrincipal AuthenticatedUser user,
 			@Valid @RequestBody OnboardingRequest request) {
 		OnboardingResponse response = onboardingService.startOnboarding(user, request);
 		return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -61,7 +61,7 @@ public class OnboardingController {
 		@ApiResponse(responseCode = "401", description = "Unauthorized"),
 		@ApiResponse(responseCode = "404", description = "No onboarding found")
 	})
-	public ResponseEntity<OnboardingResponse> getOnboarding(@AuthenticationPrincipal User user) {
+	public ResponseEntity<OnboardingResponse> getOnboarding(@AuthenticationPrincipal AuthenticatedUser user) {
 		OnboardingResponse response = onboardingService.getOnboarding(user);
 		return ResponseEntity.ok(response);
 	}
@@ -83,7 +83,7 @@ public class OnboardingController {
 		@ApiResponse(responseCode = "404", description = "No active onboarding found")
 	})
 	public ResponseEntity<DocumentUploadResponse> addDocument(
-			@AuthenticationPrincipal User user,
+			@AuthenticationPrincipal AuthenticatedUser user,
 			@Valid @RequestBody DocumentRequest request) {
 		DocumentUploadResponse response = onboardingService.addDocument(user, request);
 		return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -105,7 +105,7 @@ public class OnboardingController {
 		@ApiResponse(responseCode = "404", description = "Document not found or file not found in S3")
 	})
 	public ResponseEntity<MessageResponse> confirmUpload(
-			@AuthenticationPrincipal User user,
+			@AuthenticationPrincipal AuthenticatedUser user,
 			@PathVariable Long documentId,
 			@Valid @RequestBody ConfirmUploadRequest request) {
 		MessageResponse response = onboardingService.confirmUpload(user, documentId, request);
@@ -125,7 +125,7 @@ public class OnboardingController {
 		@ApiResponse(responseCode = "404", description = "Document or onboarding not found")
 	})
 	public ResponseEntity<Void> removeDocument(
-			@AuthenticationPrincipal User user,
+			@AuthenticationPrincipal AuthenticatedUser user,
 			@PathVariable Long documentId) {
 		onboardingService.removeDocument(user, documentId);
 		return ResponseEntity.noContent().build();
@@ -144,7 +144,7 @@ public class OnboardingController {
 		@ApiResponse(responseCode = "401", description = "Unauthorized"),
 		@ApiResponse(responseCode = "404", description = "No active onboarding found")
 	})
-	public ResponseEntity<MessageResponse> submitOnboarding(@AuthenticationPrincipal User user) {
+	public ResponseEntity<MessageResponse> submitOnboarding(@AuthenticationPrincipal AuthenticatedUser user) {
 		MessageResponse response = onboardingService.submitOnboarding(user);
 		return ResponseEntity.ok(response);
 	}
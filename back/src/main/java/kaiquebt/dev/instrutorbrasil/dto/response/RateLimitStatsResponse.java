@@ -0,0 +1,34 @@
+package kaiquebt.dev.instrutorbrasil.dto.response;
+
+import kaiquebt.dev.instrutorbrasil.service.RateLimitHeavyHitters;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RateLimitStatsResponse {
+
+	private String storage;
+	private String circuitState;
+	private Long liveKeys;
+	private Long checks;
+	private Double meanCheckMillis;
+	private Double maxCheckMillis;
+	private List<EndpointStats> endpoints;
+	private List<RateLimitHeavyHitters.HeavyHitter> topThrottledKeys;
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class EndpointStats {
+		private String endpoint;
+		private Long allowed;
+		private Long rejected;
+	}
+}
@@ -3,6 +3,7 @@ package kaiquebt.dev.instrutorbrasil.exception;
 import jakarta.servlet.http.HttpServletRequest;
 import kaiquebt.dev.instrutorbrasil.dto.response.ErrorResponse;
 import kaiquebt.dev.instrutorbrasil.model.enums.ErrorCode;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -211,6 +212,34 @@ public class GlobalExceptionHandler {
 		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
 	}
 
+	@ExceptionHandler(ServiceBusyException.class)
+	public ResponseEntity<ErrorResponse> handleServiceBusy(
+			ServiceBusyException ex,
+			HttpServletRequest request) {
+		ErrorResponse error = new ErrorResponse(
+				HttpStatus.SERVICE_UNAVAILABLE.value(),
+				"Service Unavailable",
+				ex.getMessage(),
+				request.getRequestURI(),
+				ErrorCode.SERVICE_UNAVAILABLE
+		);
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(error);
+	}
+
+	@ExceptionHandler(PayloadTooLargeException.class)
+	public ResponseEntity<ErrorResponse> handlePayloadTooLarge(
+			PayloadTooLargeException ex,
+			HttpServletRequest request) {
+		ErrorResponse error = new ErrorResponse(
+				HttpStatus.PAYLOAD_TOO_LARGE.value(),
+				"Payload Too Large",
+				ex.getMessage(),
+				request.getRequestURI(),
+				ErrorCode.PAYLOAD_TOO_LARGE
+		);
+		return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+	}
+
 	@ExceptionHandler(Exception.class)
 	public ResponseEntity<ErrorResponse> handleGenericException(
 			Exception ex,
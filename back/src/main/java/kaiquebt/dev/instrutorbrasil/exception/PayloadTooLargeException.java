@@ -0,0 +1,7 @@
+package kaiquebt.dev.instrutorbrasil.exception;
+
+public class PayloadTooLargeException extends RuntimeException {
+	public PayloadTooLargeException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,7 @@
+package kaiquebt.dev.instrutorbrasil.exception;
+
+public class ServiceBusyException extends RuntimeException {
+	public ServiceBusyException(String message) {
+		super(message);
+	}
+}
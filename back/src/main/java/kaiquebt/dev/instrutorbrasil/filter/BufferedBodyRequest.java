@@ -0,0 +1,96 @@
+package kaiquebt.dev.instrutorbrasil.filter;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request whose body was read up front into a buffer, so it can be inspected and then read again by the controller
+ * The buffer is borrowed from a pool and only valid until the filter chain returns
+ */
+public class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+	private final byte[] buffer;
+	private final int length;
+
+	public BufferedBodyRequest(HttpServletRequest request, byte[] buffer, int length) {
+		super(request);
+		this.buffer = buffer;
+		this.length = length;
+	}
+
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public int getContentLength() {
+		return length;
+	}
+
+	@Override
+	public long getContentLengthLong() {
+		return length;
+	}
+
+	@Override
+	public ServletInputStream getInputStream() {
+		ByteArrayInputStream body = new ByteArrayInputStream(buffer, 0, length);
+
+		return new ServletInputStream() {
+			@Override
+			public int read() {
+				return body.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				return body.read(b, off, len);
+			}
+
+			@Override
+			public boolean isFinished() {
+				return body.available() == 0;
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			/**
+			 * The whole body is already in memory, so the listener is told right away that it can read it all
+			 */
+			@Override
+			public void setReadListener(ReadListener readListener) {
+				try {
+					if (!isFinished()) {
+						readListener.onDataAvailable();
+					}
+					readListener.onAllDataRead();
+				} catch (IOException e) {
+					readListener.onError(e);
+				}
+			}
+		};
+	}
+
+	@Override
+	public BufferedReader getReader() throws IOException {
+		String encoding = getCharacterEncoding();
+		Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+		return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+	}
+}
@@ -0,0 +1,84 @@
+package kaiquebt.dev.instrutorbrasil.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kaiquebt.dev.instrutorbrasil.exception.PayloadTooLargeException;
+import kaiquebt.dev.instrutorbrasil.interceptor.RateLimitRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Buffers the request body of endpoints rate limited by email, so the interceptor can read it before the controller
+ * Every other request passes through untouched
+ * Bodies are read eagerly into a pooled buffer of app.rate-limit.max-body-bytes, larger bodies are rejected with 413
+ * The rejection is handed to the MVC exception resolvers, so GlobalExceptionHandler answers it like any other error
+ */
+@Component
+public class RateLimitBodyFilter extends OncePerRequestFilter {
+
+	private final RateLimitRegistry rateLimitRegistry;
+	private final HandlerExceptionResolver handlerExceptionResolver;
+	private final int maxBodyBytes;
+	private final BlockingQueue<byte[]> pool;
+
+	public RateLimitBodyFilter(
+			RateLimitRegistry rateLimitRegistry,
+			@Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver,
+			@Value("${app.rate-limit.max-body-bytes:16384}") int maxBodyBytes,
+			@Value("${app.rate-limit.body-buffer-pool-size:32}") int poolSize) {
+		this.rateLimitRegistry = rateLimitRegistry;
+		this.handlerExceptionResolver = handlerExceptionResolver;
+		this.maxBodyBytes = maxBodyBytes;
+		this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !rateLimitRegistry.requiresBody(request);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		if (request.getContentLengthLong() > maxBodyBytes) {
+			rejectTooLarge(request, response);
+			return;
+		}
+
+		byte[] buffer = borrow();
+		try {
+			InputStream in = request.getInputStream();
+			int length = in.readNBytes(buffer, 0, maxBodyBytes);
+			if (length == maxBodyBytes && in.read() != -1) {
+				// Chunked body without a declared length that goes over the cap
+				rejectTooLarge(request, response);
+				return;
+			}
+
+			filterChain.doFilter(new BufferedBodyRequest(request, buffer, length), response);
+		} finally {
+			pool.offer(buffer);
+		}
+	}
+
+	private byte[] borrow() {
+		byte[] buffer = pool.poll();
+		return buffer != null ? buffer : new byte[maxBodyBytes];
+	}
+
+	private void rejectTooLarge(HttpServletRequest request, HttpServletResponse response) {
+		handlerExceptionResolver.resolveException(request, response, null,
+				new PayloadTooLargeException("Request body exceeds " + maxBodyBytes + " bytes"));
+	}
+}
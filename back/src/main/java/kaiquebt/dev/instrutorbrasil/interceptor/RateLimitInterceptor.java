@@ -1,19 +1,17 @@
 package kaiquebt.dev.instrutorbrasil.interceptor;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
 import kaiquebt.dev.instrutorbrasil.service.RateLimitService;
+import kaiquebt.dev.instrutorbrasil.service.storage.LimitSpec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.util.ContentCachingRequestWrapper;
 
-import java.io.IOException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
@@ -21,7 +19,7 @@ import java.util.Map;
 public class RateLimitInterceptor implements HandlerInterceptor {
 
 	private final RateLimitService rateLimitService;
-	private final ObjectMapper objectMapper;
+	private final RateLimitRegistry rateLimitRegistry;
 
 	@Override
 	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
@@ -31,74 +29,29 @@ public class RateLimitInterceptor implements HandlerInterceptor {
 
 		HandlerMethod handlerMethod = (HandlerMethod) handler;
 
-		// Get all @RateLimit annotations (supports repeatable annotations)
-		RateLimit[] rateLimits = handlerMethod.getMethod().getDeclaredAnnotationsByType(RateLimit.class);
+		// Rate limits resolved at startup (supports repeatable annotations)
+		List<RateLimitRegistry.EndpointLimit> limits = rateLimitRegistry.getLimits(handlerMethod);
 
-		if (rateLimits.length == 0) {
+		if (limits.isEmpty()) {
 			return true;
 		}
 
-		// Check all rate limits - if any fails, exception is thrown
-		for (RateLimit rateLimit : rateLimits) {
-			String key = extractKey(request, rateLimit);
+		// Collect all rate limits and check them in one storage call - if any fails, exception is thrown
+		List<LimitSpec> specs = new ArrayList<>(limits.size());
+		for (RateLimitRegistry.EndpointLimit limit : limits) {
+			String key = limit.keyExtractor().apply(request);
 			if (key == null) {
 				log.warn("Could not extract rate limit key ({}) for endpoint: {}",
-						rateLimit.keyType(), request.getRequestURI());
+						limit.keyType(), request.getRequestURI());
 				continue;
 			}
 
-			// This will throw RateLimitExceededException if limit is exceeded
-			rateLimitService.checkRateLimit(key, rateLimit.maxAttempts(), rateLimit.timeWindowSeconds());
+			specs.add(limit.toSpec(key));
 		}
 
-		return true;
-	}
-
-	private String extractKey(HttpServletRequest request, RateLimit rateLimit) {
-		if (rateLimit.keyType() == RateLimit.KeyType.IP) {
-			return getClientIpAddress(request);
-		} else if (rateLimit.keyType() == RateLimit.KeyType.EMAIL) {
-			return extractEmailFromRequest(request);
-		}
-		return null;
-	}
-
-	private String getClientIpAddress(HttpServletRequest request) {
-		String xForwardedFor = request.getHeader("X-Forwarded-For");
-		if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-			return xForwardedFor.split(",")[0].trim();
-		}
-
-		String xRealIp = request.getHeader("X-Real-IP");
-		if (xRealIp != null && !xRealIp.isEmpty()) {
-			return xRealIp;
-		}
+		// This will throw RateLimitExceededException if any limit is exceeded
+		rateLimitService.checkRateLimits(specs);
 
-		return request.getRemoteAddr();
-	}
-
-	private String extractEmailFromRequest(HttpServletRequest request) {
-		try {
-			if (request instanceof ContentCachingRequestWrapper) {
-				ContentCachingRequestWrapper wrapper = (ContentCachingRequestWrapper) request;
-				byte[] content = wrapper.getContentAsByteArray();
-				if (content.length > 0) {
-					Map<String, Object> body = objectMapper.readValue(content, Map.class);
-					Object email = body.get("email");
-					return email != null ? email.toString() : null;
-				}
-			}
-
-			// Fallback: try to read from input stream
-			if (request.getContentLength() > 0) {
-				Map<String, Object> body = objectMapper.readValue(request.getInputStream(), Map.class);
-				Object email = body.get("email");
-				return email != null ? email.toString() : null;
-			}
-		} catch (IOException e) {
-			log.warn("Failed to extract email from request body", e);
-		}
-
-		return null;
+		return true;
 	}
 }
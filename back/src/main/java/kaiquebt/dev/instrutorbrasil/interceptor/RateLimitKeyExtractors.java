@@ -0,0 +1,95 @@
+package kaiquebt.dev.instrutorbrasil.interceptor;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import kaiquebt.dev.instrutorbrasil.filter.BufferedBodyRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Extracts the value a rate limit is keyed on from a request
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitKeyExtractors {
+
+	private static final String EMAIL_FIELD = "email";
+
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * Resolve the extractor for a key type, done once per endpoint at startup
+	 *
+	 * @param keyType The key type of a @RateLimit annotation
+	 * @return Function returning the key, or null if the request doesn't carry it
+	 */
+	public Function<HttpServletRequest, String> forType(RateLimit.KeyType keyType) {
+		return switch (keyType) {
+			case IP -> this::getClientIpAddress;
+			case EMAIL -> this::extractEmailFromRequest;
+		};
+	}
+
+	private String getClientIpAddress(HttpServletRequest request) {
+		String xForwardedFor = request.getHeader("X-Forwarded-For");
+		if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+			return xForwardedFor.split(",")[0].trim();
+		}
+
+		String xRealIp = request.getHeader("X-Real-IP");
+		if (xRealIp != null && !xRealIp.isEmpty()) {
+			return xRealIp;
+		}
+
+		return request.getRemoteAddr();
+	}
+
+	private String extractEmailFromRequest(HttpServletRequest request) {
+		// Other wrappers (e.g. Spring Security's) may sit on top of the buffered request
+		BufferedBodyRequest buffered = WebUtils.getNativeRequest(request, BufferedBodyRequest.class);
+		if (buffered == null || buffered.getLength() == 0) {
+			return null;
+		}
+
+		try {
+			return readEmail(buffered.getBuffer(), buffered.getLength());
+		} catch (IOException e) {
+			log.warn("Failed to extract email from request body: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stream the JSON body for the top-level "email" field, without building a tree or a map
+	 * Nested objects and arrays are skipped. The whole object is read and the last "email" wins, like Jackson
+	 * binding the request DTO, so a duplicate field can't key the limit on a different address than the controller uses
+	 */
+	private String readEmail(byte[] content, int length) throws IOException {
+		try (JsonParser parser = objectMapper.getFactory().createParser(content, 0, length)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+
+			String email = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.currentName();
+				JsonToken value = parser.nextToken();
+				if (EMAIL_FIELD.equals(field)) {
+					email = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+				}
+				parser.skipChildren();
+			}
+
+			return email;
+		}
+	}
+}
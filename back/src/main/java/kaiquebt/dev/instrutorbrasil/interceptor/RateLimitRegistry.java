@@ -0,0 +1,148 @@
+package kaiquebt.dev.instrutorbrasil.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import kaiquebt.dev.instrutorbrasil.service.storage.LimitSpec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Rate limits of every handler method, resolved once when the context starts
+ * Annotations, key extractors and key prefixes are looked up at startup, so the request path is a single map read
+ * Keyed by Method rather than HandlerMethod, because the HandlerMethod seen per request is a copy with the bean resolved
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitRegistry {
+
+	private final RateLimitKeyExtractors keyExtractors;
+
+	private volatile Map<Method, List<EndpointLimit>> limits = Map.of();
+	// Mappings of handlers with EMAIL-keyed limits, the only ones whose body has to be buffered
+	private volatile List<RequestMappingInfo> bodyKeyedMappings = List.of();
+	// Handlers not known at startup (e.g. registered later), resolved on first use
+	private final Map<Method, List<EndpointLimit>> lateLimits = new ConcurrentHashMap<>();
+
+	@EventListener
+	public void onContextRefreshed(ContextRefreshedEvent event) {
+		Map<Method, List<EndpointLimit>> resolved = new HashMap<>();
+		List<RequestMappingInfo> bodyKeyed = new ArrayList<>();
+		int limited = 0;
+
+		for (RequestMappingHandlerMapping mapping : event.getApplicationContext().getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+			for (var entry : mapping.getHandlerMethods().entrySet()) {
+				Method method = entry.getValue().getMethod();
+				List<EndpointLimit> endpointLimits = resolve(method);
+				resolved.put(method, endpointLimits);
+				if (!endpointLimits.isEmpty()) {
+					limited++;
+				}
+				if (endpointLimits.stream().anyMatch(limit -> limit.keyType() == RateLimit.KeyType.EMAIL)) {
+					bodyKeyed.add(entry.getKey());
+				}
+			}
+		}
+
+		limits = Map.copyOf(resolved);
+		bodyKeyedMappings = List.copyOf(bodyKeyed);
+		log.info("Rate limit registry resolved {} handler(s), {} with rate limits", resolved.size(), limited);
+	}
+
+	/**
+	 * Get the rate limits of a handler
+	 *
+	 * @param handlerMethod The handler the request is mapped to
+	 * @return The handler's limits, empty if it has none
+	 */
+	public List<EndpointLimit> getLimits(HandlerMethod handlerMethod) {
+		Method method = handlerMethod.getMethod();
+		List<EndpointLimit> endpointLimits = limits.get(method);
+		if (endpointLimits != null) {
+			return endpointLimits;
+		}
+		return lateLimits.computeIfAbsent(method, this::resolve);
+	}
+
+	/**
+	 * Whether the request maps to a handler keyed on a body field, so its body must be readable twice
+	 *
+	 * @param request The incoming request, before the dispatcher resolved its handler
+	 */
+	public boolean requiresBody(HttpServletRequest request) {
+		List<RequestMappingInfo> mappings = bodyKeyedMappings;
+		if (mappings.isEmpty()) {
+			return false;
+		}
+
+		// Filters run before the dispatcher has parsed the path, parse it just for the match
+		boolean parsed = !ServletRequestPathUtils.hasParsedRequestPath(request);
+		if (parsed) {
+			ServletRequestPathUtils.parseAndCache(request);
+		}
+		try {
+			for (RequestMappingInfo mapping : mappings) {
+				if (mapping.getMatchingCondition(request) != null) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			if (parsed) {
+				ServletRequestPathUtils.clearParsedRequestPath(request);
+			}
+		}
+	}
+
+	private List<EndpointLimit> resolve(Method method) {
+		RateLimit[] rateLimits = method.getDeclaredAnnotationsByType(RateLimit.class);
+		if (rateLimits.length == 0) {
+			return List.of();
+		}
+
+		// Namespaced per endpoint so the same IP doesn't share one bucket across endpoints
+		String endpoint = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+
+		return Arrays.stream(rateLimits)
+				.map(rateLimit -> new EndpointLimit(
+						endpoint + ":" + rateLimit.keyType() + ":",
+						rateLimit.keyType(),
+						keyExtractors.forType(rateLimit.keyType()),
+						rateLimit.maxAttempts(),
+						rateLimit.timeWindowSeconds(),
+						rateLimit.algorithm()))
+				.toList();
+	}
+
+	/**
+	 * One @RateLimit of an endpoint, with its key extractor and prefix already resolved
+	 */
+	public record EndpointLimit(
+			String keyPrefix,
+			RateLimit.KeyType keyType,
+			Function<HttpServletRequest, String> keyExtractor,
+			int maxAttempts,
+			int timeWindowSeconds,
+			RateLimit.Algorithm algorithm) {
+
+		public LimitSpec toSpec(String key) {
+			return new LimitSpec(keyPrefix + key, maxAttempts, timeWindowSeconds, algorithm);
+		}
+	}
+}
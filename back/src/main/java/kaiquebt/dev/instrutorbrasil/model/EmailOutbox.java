@@ -0,0 +1,71 @@
+package kaiquebt.dev.instrutorbrasil.model;
+
+import jakarta.persistence.*;
+import kaiquebt.dev.instrutorbrasil.model.enums.EmailOutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Email waiting to be sent, written in the same transaction as whatever triggered it
+ * Rows are deleted once sent, messages that ran out of attempts or expired stay behind as FAILED,
+ * with their variables cleared, until TokenCleanupService purges them
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+		@Index(name = "idx_email_outbox_status_next_attempt_at", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailOutbox {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(nullable = false)
+	private String recipient;
+
+	@Column(nullable = false)
+	private String subject;
+
+	@Column(nullable = false)
+	private String template;
+
+	// Template variables as a JSON object
+	@Column(nullable = false, columnDefinition = "text")
+	private String variables;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	@Builder.Default
+	private EmailOutboxStatus status = EmailOutboxStatus.PENDING;
+
+	@Column(nullable = false)
+	@Builder.Default
+	private Integer attempts = 0;
+
+	// Also pushed forward while a dispatcher holds the message, so a crashed node's batch is picked up again
+	@Column(name = "next_attempt_at", nullable = false)
+	private Instant nextAttemptAt;
+
+	// Expiry of the token in the message's link, the message is dropped instead of sent after it
+	@Column(name = "expires_at")
+	private Instant expiresAt;
+
+	@Column(name = "last_error", length = 500)
+	private String lastError;
+
+	@Column(name = "created_at", nullable = false, updatable = false)
+	private Instant createdAt;
+
+	@PrePersist
+	protected void onCreate() {
+		createdAt = Instant.now();
+	}
+}
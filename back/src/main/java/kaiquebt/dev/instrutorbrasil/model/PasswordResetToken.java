@@ -5,11 +5,15 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.Instant;
 
 @Entity
-@Table(name = "password_reset_tokens")
+@Table(name = "password_reset_tokens", indexes = {
+		@Index(name = "idx_password_reset_tokens_expiry_date", columnList = "expiry_date"),
+		@Index(name = "idx_password_reset_tokens_user_id", columnList = "user_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,7 +24,15 @@ public class PasswordResetToken {
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private Long id;
 
-	@Column(nullable = false, unique = true)
+	// SHA-256 of the token, see OpaqueTokens
+	// Unique through a constraint, or through a trigger on the tables partitioned by db/partitioned-tokens.sql
+	// Declared nullable so ddl-auto can add it to existing tables, TokenHashMigration backfills it and sets NOT NULL
+	@Column(name = "token_hash", unique = true, length = 32)
+	private byte[] tokenHash;
+
+	// Raw token, only set on a token that was just issued
+	@Transient
+	@ToString.Exclude
 	private String token;
 
 	@ManyToOne(fetch = FetchType.LAZY)
@@ -5,11 +5,15 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.Instant;
 
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens", indexes = {
+		@Index(name = "idx_refresh_tokens_expiry_date", columnList = "expiry_date"),
+		@Index(name = "idx_refresh_tokens_user_id", columnList = "user_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,7 +24,15 @@ public class RefreshToken {
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private Long id;
 
-	@Column(nullable = false, unique = true)
+	// SHA-256 of the token, see OpaqueTokens
+	// Unique through a constraint, or through a trigger on the tables partitioned by db/partitioned-tokens.sql
+	// Declared nullable so ddl-auto can add it to existing tables, TokenHashMigration backfills it and sets NOT NULL
+	@Column(name = "token_hash", unique = true, length = 32)
+	private byte[] tokenHash;
+
+	// Raw token, only set on a token that was just issued
+	@Transient
+	@ToString.Exclude
 	private String token;
 
 	@ManyToOne(fetch = FetchType.LAZY)
@@ -33,6 +45,14 @@ public class RefreshToken {
 	@Column(nullable = false)
 	private Boolean revoked = false;
 
+	// Set when the token is rotated, a second use shortly after is a concurrent refresh rather than reuse
+	@Column(name = "revoked_at")
+	private Instant revokedAt;
+
+	// Token issued when this rotated token was presented again within the grace window, at most one
+	@Column(name = "grace_token_hash", length = 32)
+	private byte[] graceTokenHash;
+
 	@Column(name = "created_at", nullable = false, updatable = false)
 	private Instant createdAt;
 
@@ -0,0 +1,6 @@
+package kaiquebt.dev.instrutorbrasil.model.enums;
+
+public enum EmailOutboxStatus {
+	PENDING,
+	FAILED
+}
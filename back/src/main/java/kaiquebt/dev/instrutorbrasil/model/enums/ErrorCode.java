@@ -8,6 +8,7 @@ public enum ErrorCode {
 	UNAUTHORIZED,
 	FORBIDDEN,
 	RATE_LIMIT_EXCEEDED,
+	SERVICE_UNAVAILABLE,
 
 	// Authentication errors
 	INVALID_CREDENTIALS,
@@ -41,5 +42,6 @@ public enum ErrorCode {
 	INVALID_REQUEST,
 	MISSING_REQUIRED_FIELD,
 	INVALID_FIELD_FORMAT,
-	INVALID_FIELD_VALUE
+	INVALID_FIELD_VALUE,
+	PAYLOAD_TOO_LARGE
 }
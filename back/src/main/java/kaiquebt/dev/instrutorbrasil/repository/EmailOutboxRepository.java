@@ -0,0 +1,58 @@
+package kaiquebt.dev.instrutorbrasil.repository;
+
+import kaiquebt.dev.instrutorbrasil.model.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+	/**
+	 * Claim up to limit due messages in one statement
+	 * Claimed messages count an attempt and are hidden until leaseUntil, rows claimed by another node are skipped
+	 *
+	 * @return The claimed messages
+	 */
+	@Query(value = """
+			UPDATE email_outbox SET attempts = attempts + 1, next_attempt_at = :leaseUntil
+			WHERE id IN (
+				SELECT id FROM email_outbox
+				WHERE status = 'PENDING' AND next_attempt_at <= :now
+				ORDER BY next_attempt_at
+				LIMIT :limit
+				FOR UPDATE SKIP LOCKED
+			)
+			RETURNING *
+			""", nativeQuery = true)
+	List<EmailOutbox> claimBatch(Instant now, Instant leaseUntil, int limit);
+
+	@Modifying
+	@Query("UPDATE EmailOutbox eo SET eo.nextAttemptAt = :nextAttemptAt, eo.lastError = :lastError WHERE eo.id = :id")
+	void reschedule(Long id, Instant nextAttemptAt, String lastError);
+
+	/**
+	 * Give up on a message, its variables are cleared since they may hold a token link
+	 */
+	@Modifying
+	@Query("UPDATE EmailOutbox eo SET eo.status = kaiquebt.dev.instrutorbrasil.model.enums.EmailOutboxStatus.FAILED, "
+			+ "eo.variables = '{}', eo.lastError = :lastError WHERE eo.id = :id")
+	void markFailed(Long id, String lastError);
+
+	/**
+	 * Delete at most limit FAILED messages queued before date, rows locked by a concurrent delete are skipped
+	 *
+	 * @return Number of messages deleted, below limit once nothing unlocked is left
+	 */
+	@Modifying
+	@Query(value = """
+			DELETE FROM email_outbox WHERE id IN (
+				SELECT id FROM email_outbox WHERE status = 'FAILED' AND created_at < :date LIMIT :limit FOR UPDATE SKIP LOCKED
+			)
+			""", nativeQuery = true)
+	int deleteFailedBatch(Instant date, int limit);
+}
@@ -13,11 +13,20 @@ import java.util.Optional;
 @Repository
 public interface EmailVerificationTokenRepository extends JpaRepository<EmailVerificationToken, Long> {
 
-	Optional<EmailVerificationToken> findByToken(String token);
+	Optional<EmailVerificationToken> findByTokenHash(byte[] tokenHash);
 
 	void deleteByUser(User user);
 
+	/**
+	 * Delete at most limit expired tokens, rows locked by a concurrent delete are skipped
+	 *
+	 * @return Number of tokens deleted, below limit once nothing unlocked is left
+	 */
 	@Modifying
-	@Query("DELETE FROM EmailVerificationToken evt WHERE evt.expiryDate < :date")
-	void deleteByExpiryDateBefore(Instant date);
+	@Query(value = """
+			DELETE FROM email_verification_tokens WHERE id IN (
+				SELECT id FROM email_verification_tokens WHERE expiry_date < :date LIMIT :limit FOR UPDATE SKIP LOCKED
+			)
+			""", nativeQuery = true)
+	int deleteExpiredBatch(Instant date, int limit);
 }
@@ -13,11 +13,20 @@ import java.util.Optional;
 @Repository
 public interface PasswordResetTokenRepository extends JpaRepository<PasswordResetToken, Long> {
 
-	Optional<PasswordResetToken> findByToken(String token);
+	Optional<PasswordResetToken> findByTokenHash(byte[] tokenHash);
 
 	void deleteByUser(User user);
 
+	/**
+	 * Delete at most limit expired tokens, rows locked by a concurrent delete are skipped
+	 *
+	 * @return Number of tokens deleted, below limit once nothing unlocked is left
+	 */
 	@Modifying
-	@Query("DELETE FROM PasswordResetToken prt WHERE prt.expiryDate < :date")
-	void deleteByExpiryDateBefore(Instant date);
+	@Query(value = """
+			DELETE FROM password_reset_tokens WHERE id IN (
+				SELECT id FROM password_reset_tokens WHERE expiry_date < :date LIMIT :limit FOR UPDATE SKIP LOCKED
+			)
+			""", nativeQuery = true)
+	int deleteExpiredBatch(Instant date, int limit);
 }
@@ -1,7 +1,6 @@
 package kaiquebt.dev.instrutorbrasil.repository;
 
 import kaiquebt.dev.instrutorbrasil.model.RefreshToken;
-import kaiquebt.dev.instrutorbrasil.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,11 +12,103 @@ import java.util.Optional;
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-	Optional<RefreshToken> findByToken(String token);
+	Optional<RefreshToken> findByTokenHash(byte[] tokenHash);
 
-	void deleteByUser(User user);
+	@Modifying
+	@Query("UPDATE RefreshToken rt SET rt.revoked = true WHERE rt.tokenHash = :tokenHash")
+	void revokeByTokenHash(byte[] tokenHash);
+
+	@Modifying
+	@Query("DELETE FROM RefreshToken rt WHERE rt.tokenHash = :tokenHash")
+	void deleteByTokenHash(byte[] tokenHash);
+
+	@Modifying
+	@Query("DELETE FROM RefreshToken rt WHERE rt.user.id = :userId")
+	void deleteByUserId(Long userId);
+
+	@Modifying
+	@Query(value = """
+			INSERT INTO refresh_tokens (token_hash, user_id, expiry_date, revoked, created_at)
+			VALUES (:tokenHash, :userId, :expiryDate, false, :now)
+			""", nativeQuery = true)
+	void insert(byte[] tokenHash, Long userId, Instant expiryDate, Instant now);
+
+	/**
+	 * Revoke a live token and insert its replacement in one statement
+	 * The revoked row is only kept until revokedExpiry, long enough for a second use of the same token
+	 * to be recognized as reuse, instead of until its original expiry
+	 *
+	 * @return Email of the token owner, empty if the token is unknown, expired or already revoked
+	 */
+	@Query(value = """
+			WITH old AS (
+				UPDATE refresh_tokens
+				SET revoked = true, revoked_at = :now, expiry_date = LEAST(expiry_date, :revokedExpiry)
+				WHERE token_hash = :tokenHash AND revoked = false AND expiry_date > :now
+				RETURNING user_id
+			), replacement AS (
+				INSERT INTO refresh_tokens (token_hash, user_id, expiry_date, revoked, created_at)
+				SELECT :newTokenHash, old.user_id, :expiryDate, false, :now FROM old
+				RETURNING user_id
+			)
+			SELECT u.email FROM users u JOIN replacement r ON u.id = r.user_id
+			""", nativeQuery = true)
+	Optional<String> rotate(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant revokedExpiry);
+
+	/**
+	 * Same as rotate, but the revoked row keeps its expiry date
+	 * For tables partitioned by expiry date (db/partitioned-tokens.sql): changing it would move the row to another
+	 * partition, and a concurrent refresh of the same token then fails instead of waiting for the row
+	 *
+	 * @return Email of the token owner, empty if the token is unknown, expired or already revoked
+	 */
+	@Query(value = """
+			WITH old AS (
+				UPDATE refresh_tokens
+				SET revoked = true, revoked_at = :now
+				WHERE token_hash = :tokenHash AND revoked = false AND expiry_date > :now
+				RETURNING user_id
+			), replacement AS (
+				INSERT INTO refresh_tokens (token_hash, user_id, expiry_date, revoked, created_at)
+				SELECT :newTokenHash, old.user_id, :expiryDate, false, :now FROM old
+				RETURNING user_id
+			)
+			SELECT u.email FROM users u JOIN replacement r ON u.id = r.user_id
+			""", nativeQuery = true)
+	Optional<String> rotateKeepingExpiry(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now);
+
+	/**
+	 * Insert the grace sibling of a recently rotated token and record it on that token in one statement
+	 * A concurrent call waits for the row and then finds grace_token_hash set, so only one sibling is ever issued
+	 *
+	 * @return Email of the token owner, empty if the token wasn't rotated after rotatedAfter or already has a sibling
+	 */
+	@Query(value = """
+			WITH old AS (
+				UPDATE refresh_tokens
+				SET grace_token_hash = :newTokenHash
+				WHERE token_hash = :tokenHash AND revoked = true AND grace_token_hash IS NULL
+					AND revoked_at > :rotatedAfter AND expiry_date > :now
+				RETURNING user_id
+			), sibling AS (
+				INSERT INTO refresh_tokens (token_hash, user_id, expiry_date, revoked, created_at)
+				SELECT :newTokenHash, old.user_id, :expiryDate, false, :now FROM old
+				RETURNING user_id
+			)
+			SELECT u.email FROM users u JOIN sibling s ON u.id = s.user_id
+			""", nativeQuery = true)
+	Optional<String> issueGraceToken(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant rotatedAfter);
 
+	/**
+	 * Delete at most limit expired tokens, rows locked by a concurrent delete are skipped
+	 *
+	 * @return Number of tokens deleted, below limit once nothing unlocked is left
+	 */
 	@Modifying
-	@Query("DELETE FROM RefreshToken rt WHERE rt.expiryDate < :date")
-	void deleteByExpiryDateBefore(Instant date);
+	@Query(value = """
+			DELETE FROM refresh_tokens WHERE id IN (
+				SELECT id FROM refresh_tokens WHERE expiry_date < :date LIMIT :limit FOR UPDATE SKIP LOCKED
+			)
+			""", nativeQuery = true)
+	int deleteExpiredBatch(Instant date, int limit);
 }
@@ -0,0 +1,60 @@
+package kaiquebt.dev.instrutorbrasil.security;
+
+import kaiquebt.dev.instrutorbrasil.model.User;
+import kaiquebt.dev.instrutorbrasil.model.enums.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a user, used as the principal of token-authenticated requests
+ * Carries no password, so it is safe to cache and share between threads
+ * Services that need the entity load it, or take a reference, by id
+ */
+public record AuthenticatedUser(
+		Long id,
+		String email,
+		String name,
+		Set<Role> roles,
+		boolean enabled,
+		boolean emailVerified) implements UserDetails {
+
+	public AuthenticatedUser {
+		roles = Set.copyOf(roles);
+	}
+
+	public static AuthenticatedUser from(User user) {
+		return new AuthenticatedUser(
+				user.getId(),
+				user.getEmail(),
+				user.getName(),
+				user.getRoles(),
+				Boolean.TRUE.equals(user.getEnabled()),
+				Boolean.TRUE.equals(user.getEmailVerified()));
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return roles.stream()
+				.map(role -> new SimpleGrantedAuthority(role.getAuthority()))
+				.toList();
+	}
+
+	@Override
+	public String getPassword() {
+		return null;
+	}
+
+	@Override
+	public String getUsername() {
+		return email;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+}
@@ -1,21 +1,106 @@
 package kaiquebt.dev.instrutorbrasil.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import kaiquebt.dev.instrutorbrasil.repository.UserRepository;
+import kaiquebt.dev.instrutorbrasil.security.jwt.AccessTokenRevocationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+
+/**
+ * Loads users for Spring Security
+ * Login always reads the user from the database, so credentials and flags are never stale
+ * Only the password-less AuthenticatedUser snapshot is cached, for paths that identify a user by email
+ * without checking credentials (legacy access tokens and refresh)
+ * Evictions are broadcast to the other instances through AccessTokenRevocationService
+ */
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
 	private final UserRepository userRepository;
+	private final MeterRegistry meterRegistry;
+	private final AccessTokenRevocationService accessTokenRevocationService;
+
+	@Value("${app.user-cache.maximum-size:10000}")
+	private long maximumSize;
+
+	@Value("${app.user-cache.ttl-seconds:300}")
+	private long ttlSeconds;
+
+	// email -> snapshot, bounded and TTL-evicted so a missed invalidation heals by itself
+	private Cache<String, AuthenticatedUser> userCache;
+
+	@PostConstruct
+	public void init() {
+		userCache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, userCache, "users");
+		accessTokenRevocationService.onUserEviction(userCache::invalidate);
+	}
 
+	/**
+	 * Used by the authentication manager on login, always read from the database
+	 */
 	@Override
 	public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
 		return userRepository.findByEmail(email)
 				.orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 	}
+
+	/**
+	 * Cached principal for a user identified by email, carries no credentials
+	 *
+	 * @param email The user's email
+	 * @return The user's snapshot
+	 * @throws UsernameNotFoundException if no user has that email
+	 */
+	public AuthenticatedUser loadPrincipal(String email) throws UsernameNotFoundException {
+		// Misses are not cached, the loader returning null leaves no entry behind
+		AuthenticatedUser principal = userCache.get(email,
+				key -> userRepository.findByEmail(key).map(AuthenticatedUser::from).orElse(null));
+		if (principal == null) {
+			throw new UsernameNotFoundException("User not found with email: " + email);
+		}
+		return principal;
+	}
+
+	/**
+	 * Evict a cached user after its roles, flags or credentials changed, on every instance
+	 * Evicts immediately and again after commit, so a concurrent load can't re-cache the pre-commit row,
+	 * the other instances are told after commit
+	 *
+	 * @param email The user's email
+	 */
+	public void evict(String email) {
+		if (email == null) {
+			return;
+		}
+
+		userCache.invalidate(email);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					userCache.invalidate(email);
+				}
+			});
+		}
+		accessTokenRevocationService.publishUserEviction(email);
+	}
 }
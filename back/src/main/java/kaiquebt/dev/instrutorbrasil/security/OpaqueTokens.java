@@ -0,0 +1,49 @@
+package kaiquebt.dev.instrutorbrasil.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Random bearer tokens that are only ever persisted as their SHA-256 digest
+ * The raw token is handed to the client once, lookups hash the presented value and hit the 32-byte unique index,
+ * so a leaked table holds nothing that can be presented back
+ * A plain digest is enough here, the secrets have 256 bits of entropy and can't be brute forced like passwords
+ */
+public final class OpaqueTokens {
+
+	private static final int SECRET_BYTES = 32;
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+	private OpaqueTokens() {
+	}
+
+	/**
+	 * Generate a new URL-safe token
+	 *
+	 * @return 43 characters of base64url
+	 */
+	public static String generate() {
+		byte[] secret = new byte[SECRET_BYTES];
+		RANDOM.nextBytes(secret);
+		return ENCODER.encodeToString(secret);
+	}
+
+	/**
+	 * Digest stored and looked up in place of the token
+	 *
+	 * @param token The raw token
+	 * @return SHA-256 of the token's UTF-8 bytes
+	 */
+	public static byte[] hash(String token) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			// Every JRE is required to ship SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
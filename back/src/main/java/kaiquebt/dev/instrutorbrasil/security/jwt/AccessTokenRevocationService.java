@@ -0,0 +1,255 @@
+package kaiquebt.dev.instrutorbrasil.security.jwt;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Short-lived revocation list for access tokens
+ * Access tokens are validated from their claims only, so when an account is disabled, its password is reset
+ * or its roles change the user id is recorded here and every token issued up to that moment is rejected
+ * until it would have expired anyway
+ *
+ * With app.access-token-revocation.shared (default) revocations are shared through Redis: each one is stored
+ * as a key living as long as an access token and published to the other instances, which keep a local copy
+ * so the check on every request stays in memory
+ * A periodic scan of the keys picks up revocations whose message was missed (instance starting, Redis reconnecting)
+ *
+ * The same channel carries evictions of cached user snapshots (see CustomUserDetailsService), so a refresh on
+ * another instance doesn't mint a token from roles or flags that just changed. A missed one heals with the cache TTL
+ */
+@Service
+@Slf4j
+public class AccessTokenRevocationService {
+
+	private static final String KEY_PREFIX = "access_token_revoked:";
+	private static final String CHANNEL = "access-token-revocations";
+	private static final String EVICT_PREFIX = "evict:";
+	private static final int SYNC_BATCH_SIZE = 500;
+
+	private final RedisTemplate<String, String> redisTemplate;
+
+	@Value("${jwt.access-token-expiration}")
+	private Long accessTokenExpiration;
+
+	@Value("${app.access-token-revocation.shared:true}")
+	private boolean shared;
+
+	// userId -> epoch second of the revocation
+	private final Map<Long, Long> revokedUsers = new ConcurrentHashMap<>();
+	private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+	private RedisMessageListenerContainer listenerContainer;
+
+	public AccessTokenRevocationService(RedisTemplate<String, String> redisTemplate) {
+		this.redisTemplate = redisTemplate;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (!shared) {
+			log.info("Access token revocations are kept in memory, each instance only knows its own");
+			return;
+		}
+
+		listenerContainer = new RedisMessageListenerContainer();
+		listenerContainer.setConnectionFactory(redisTemplate.getConnectionFactory());
+		listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(CHANNEL));
+		listenerContainer.afterPropertiesSet();
+		listenerContainer.start();
+
+		sync();
+	}
+
+	@PreDestroy
+	public void shutdown() throws Exception {
+		if (listenerContainer != null) {
+			listenerContainer.destroy();
+		}
+	}
+
+	/**
+	 * Reject all access tokens issued to the user up to now, on every instance
+	 * Inside a transaction the revocation is applied and published after commit, so a rollback leaves the user
+	 * signed in and a token minted from the pre-commit state meanwhile is rejected too
+	 * If Redis is unavailable the revocation still applies here and the error is only logged
+	 *
+	 * @param userId The user id
+	 */
+	public void revokeUser(Long userId) {
+		if (userId == null) {
+			return;
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					revokeNow(userId);
+				}
+			});
+		} else {
+			revokeNow(userId);
+		}
+	}
+
+	private void revokeNow(Long userId) {
+		long revokedAt = System.currentTimeMillis() / 1000;
+		record(userId, revokedAt);
+		log.debug("Access tokens revoked for user {}", userId);
+
+		if (shared) {
+			try {
+				redisTemplate.opsForValue().set(KEY_PREFIX + userId, Long.toString(revokedAt), Duration.ofMillis(accessTokenExpiration));
+				redisTemplate.convertAndSend(CHANNEL, userId + ":" + revokedAt);
+			} catch (RuntimeException e) {
+				log.warn("Failed to share access token revocation of user {}: {}", userId, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Tell the other instances to drop their cached snapshot of a user, after commit inside a transaction
+	 * Does nothing unless revocations are shared, the local cache is the caller's business
+	 *
+	 * @param email The user's email
+	 */
+	public void publishUserEviction(String email) {
+		if (!shared || email == null) {
+			return;
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					sendUserEviction(email);
+				}
+			});
+		} else {
+			sendUserEviction(email);
+		}
+	}
+
+	/**
+	 * Register a callback for user evictions published by any instance, this one included
+	 *
+	 * @param listener Called with the evicted user's email
+	 */
+	public void onUserEviction(Consumer<String> listener) {
+		evictionListeners.add(listener);
+	}
+
+	/**
+	 * Check whether a token issued at the given instant was revoked
+	 * Tokens issued in the same second as the revocation are rejected as well, since iat has second precision
+	 *
+	 * @param userId The user id from the token
+	 * @param issuedAt The iat claim of the token
+	 * @return true if the token must be rejected
+	 */
+	public boolean isRevoked(Long userId, Date issuedAt) {
+		Long revokedAt = revokedUsers.get(userId);
+		if (revokedAt == null) {
+			return false;
+		}
+		return issuedAt == null || issuedAt.getTime() / 1000 <= revokedAt;
+	}
+
+	/**
+	 * Copy the revocations stored in Redis, in case a published one was missed
+	 */
+	@Scheduled(fixedDelayString = "${app.access-token-revocation.sync-interval-ms:10000}")
+	public void sync() {
+		if (!shared) {
+			return;
+		}
+
+		ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(SYNC_BATCH_SIZE).build();
+		List<String> keys = new ArrayList<>(SYNC_BATCH_SIZE);
+		try (Cursor<String> cursor = redisTemplate.scan(options)) {
+			while (cursor.hasNext()) {
+				keys.add(cursor.next());
+				if (keys.size() == SYNC_BATCH_SIZE) {
+					syncKeys(keys);
+					keys.clear();
+				}
+			}
+			syncKeys(keys);
+		} catch (RuntimeException e) {
+			log.warn("Failed to sync access token revocations from Redis: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Drop entries older than the access token lifetime, tokens they would reject have expired by now
+	 */
+	@Scheduled(fixedRate = 300000) // 5 minutes
+	public void cleanupExpired() {
+		long threshold = (System.currentTimeMillis() - accessTokenExpiration) / 1000;
+		revokedUsers.values().removeIf(revokedAt -> revokedAt < threshold);
+	}
+
+	private void syncKeys(List<String> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		List<String> values = redisTemplate.opsForValue().multiGet(keys);
+		if (values == null) {
+			return;
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			if (values.get(i) != null) {
+				record(Long.parseLong(keys.get(i).substring(KEY_PREFIX.length())), Long.parseLong(values.get(i)));
+			}
+		}
+	}
+
+	private void sendUserEviction(String email) {
+		try {
+			redisTemplate.convertAndSend(CHANNEL, EVICT_PREFIX + email);
+		} catch (RuntimeException e) {
+			log.warn("Failed to publish user cache eviction: {}", e.getMessage());
+		}
+	}
+
+	private void onMessage(Message message, byte[] pattern) {
+		String body = new String(message.getBody(), StandardCharsets.UTF_8);
+		if (body.startsWith(EVICT_PREFIX)) {
+			String email = body.substring(EVICT_PREFIX.length());
+			evictionListeners.forEach(listener -> listener.accept(email));
+			return;
+		}
+
+		String[] parts = body.split(":", 2);
+		try {
+			record(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+		} catch (RuntimeException e) {
+			log.warn("Ignoring malformed access token revocation message: {}", e.getMessage());
+		}
+	}
+
+	private void record(Long userId, long revokedAt) {
+		revokedUsers.merge(userId, revokedAt, Math::max);
+	}
+}
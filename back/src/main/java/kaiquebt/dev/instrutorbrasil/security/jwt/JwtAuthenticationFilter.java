@@ -4,12 +4,12 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
+import kaiquebt.dev.instrutorbrasil.security.CustomUserDetailsService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -21,7 +21,8 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
 	private final JwtService jwtService;
-	private final UserDetailsService userDetailsService;
+	private final CustomUserDetailsService userDetailsService;
+	private final AccessTokenRevocationService revocationService;
 
 	@Override
 	protected void doFilterInternal(
@@ -31,7 +32,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 	) throws ServletException, IOException {
 		final String authHeader = request.getHeader("Authorization");
 		final String jwt;
-		final String userEmail;
+		final ParsedToken parsedToken;
 
 		if (authHeader == null || !authHeader.startsWith("Bearer ")) {
 			filterChain.doFilter(request, response);
@@ -40,12 +41,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
 		jwt = authHeader.substring(7);
 		try {
-			userEmail = jwtService.extractEmail(jwt);
+			// Verify and parse once, expiration is already enforced by the parser
+			parsedToken = jwtService.parseToken(jwt);
+			String userEmail = parsedToken.subject();
 
 			if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-				UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
+				AuthenticatedUser userDetails = jwtService.hasPrincipalClaims(parsedToken)
+						// Stateless path: rebuild the principal from the claims, no database round-trip
+						? jwtService.toPrincipal(parsedToken)
+						// Tokens issued before the principal claims existed
+						: userDetailsService.loadPrincipal(userEmail);
 
-				if (jwtService.validateToken(jwt, userDetails)) {
+				if (!userDetails.isEnabled()
+						|| revocationService.isRevoked(userDetails.id(), parsedToken.issuedAt())) {
+					filterChain.doFilter(request, response);
+					return;
+				}
+
+				if (jwtService.validateToken(parsedToken, userDetails)) {
 					UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
 							userDetails,
 							null,
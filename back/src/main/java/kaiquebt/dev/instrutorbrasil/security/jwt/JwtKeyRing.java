@@ -0,0 +1,124 @@
+package kaiquebt.dev.instrutorbrasil.security.jwt;
+
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the HMAC keys used to sign and verify JWTs, loaded from configuration so every instance has the same ring
+ * Secrets are decoded once at startup, the hot path only reads a small immutable map
+ *
+ * Rotation is a configuration change rolled out to every instance: first add the new key to jwt.previous-keys
+ * everywhere, so all instances accept it, then make it jwt.secret / jwt.key-id and move the old one to previous-keys
+ */
+@Component
+@Slf4j
+public class JwtKeyRing {
+
+	@Value("${jwt.secret}")
+	private String jwtSecret;
+
+	@Value("${jwt.key-id:primary}")
+	private String jwtKeyId;
+
+	/**
+	 * Retired keys still accepted for verification, as "kid:base64secret" pairs separated by commas
+	 */
+	@Value("${jwt.previous-keys:}")
+	private String previousKeys;
+
+	/**
+	 * Maximum number of keys (current included) accepted for verification
+	 */
+	@Value("${jwt.max-verification-keys:3}")
+	private int maxVerificationKeys;
+
+	/**
+	 * Id of the key that signed tokens without a kid header, issued before key ids were introduced
+	 * That was the original jwt.secret, which got the default key id
+	 */
+	@Value("${jwt.legacy-key-id:primary}")
+	private String legacyKeyId;
+
+	private String signingKeyId;
+	private SecretKey signingKey;
+	private SecretKey legacyKey;
+	private Map<String, SecretKey> verificationKeys;
+
+	@PostConstruct
+	public void init() {
+		Map<String, SecretKey> keys = new LinkedHashMap<>();
+
+		if (previousKeys != null && !previousKeys.isBlank()) {
+			for (String entry : previousKeys.split(",")) {
+				String[] parts = entry.trim().split(":", 2);
+				if (parts.length != 2 || parts[0].isBlank()) {
+					throw new IllegalStateException("Invalid jwt.previous-keys entry, expected kid:base64secret");
+				}
+				keys.put(parts[0].trim(), decode(parts[1].trim()));
+			}
+		}
+
+		signingKeyId = jwtKeyId;
+		signingKey = decode(jwtSecret);
+		keys.remove(jwtKeyId);
+		keys.put(jwtKeyId, signingKey);
+
+		// Looked up before trimming, the original key keeps verifying kid-less tokens for as long as it is configured
+		legacyKey = keys.get(legacyKeyId);
+		verificationKeys = trim(keys);
+
+		if (legacyKey == null) {
+			log.warn("JWT legacy key '{}' is not configured, tokens without a kid header will be rejected", legacyKeyId);
+		}
+		log.info("JWT key ring initialized with signing key '{}' and {} verification key(s)",
+				signingKeyId, verificationKeys.size());
+	}
+
+	public String getSigningKeyId() {
+		return signingKeyId;
+	}
+
+	public SecretKey getSigningKey() {
+		return signingKey;
+	}
+
+	/**
+	 * Resolve the key to verify a token signed with the given key id
+	 * Tokens without a kid header (issued before key ids were introduced) use the original key, not the current one
+	 *
+	 * @param keyId The kid header of the token, may be null
+	 * @return The verification key, or null if the key id is unknown
+	 */
+	public SecretKey getVerificationKey(String keyId) {
+		if (keyId == null) {
+			return legacyKey;
+		}
+		return verificationKeys.get(keyId);
+	}
+
+	private Map<String, SecretKey> trim(Map<String, SecretKey> keys) {
+		// Insertion order is oldest first, so drop from the head until the ring fits
+		var iterator = keys.entrySet().iterator();
+		while (keys.size() > Math.max(1, maxVerificationKeys) && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+		return Map.copyOf(keys);
+	}
+
+	private SecretKey decode(String base64Secret) {
+		try {
+			return Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid JWT secret: " + e.getMessage(), e);
+		}
+	}
+}
@@ -1,24 +1,41 @@
 package kaiquebt.dev.instrutorbrasil.security.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.UnsupportedJwtException;
+import jakarta.annotation.PostConstruct;
+import kaiquebt.dev.instrutorbrasil.model.enums.Role;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
-	@Value("${jwt.secret}")
-	private String jwtSecret;
+	// Access token claims used to rebuild the principal without a database lookup
+	public static final String CLAIM_USER_ID = "uid";
+	public static final String CLAIM_ROLES = "roles";
+	public static final String CLAIM_ENABLED = "enabled";
+	public static final String CLAIM_EMAIL_VERIFIED = "email_verified";
+	public static final String CLAIM_NAME = "name";
+
+	private final JwtKeyRing keyRing;
 
 	@Value("${jwt.access-token-expiration}")
 	private Long accessTokenExpiration;
@@ -26,6 +43,40 @@ public class JwtService {
 	@Value("${jwt.refresh-token-expiration}")
 	private Long refreshTokenExpiration;
 
+	private JwtParser parser;
+
+	/**
+	 * Build the parser once, it is immutable and thread-safe
+	 * Verification keys are located per token by kid header
+	 */
+	@PostConstruct
+	public void init() {
+		parser = Jwts
+				.parser()
+				.keyLocator(new LocatorAdapter<Key>() {
+					@Override
+					protected Key locate(ProtectedHeader header) {
+						SecretKey key = keyRing.getVerificationKey(header.getKeyId());
+						if (key == null) {
+							throw new UnsupportedJwtException("Unknown JWT key id: " + header.getKeyId());
+						}
+						return key;
+					}
+				})
+				.build();
+	}
+
+	/**
+	 * Verify the signature and parse the token a single time
+	 *
+	 * @param token The compact JWT
+	 * @return The parsed token
+	 * @throws io.jsonwebtoken.JwtException if the token is malformed, expired or has an invalid signature
+	 */
+	public ParsedToken parseToken(String token) {
+		return new ParsedToken(extractAllClaims(token));
+	}
+
 	public String extractEmail(String token) {
 		return extractClaim(token, Claims::getSubject);
 	}
@@ -40,10 +91,7 @@ public class JwtService {
 	}
 
 	public Claims extractAllClaims(String token) {
-		return Jwts
-				.parser()
-				.verifyWith(getSignInKey())
-				.build()
+		return parser
 				.parseSignedClaims(token)
 				.getPayload();
 	}
@@ -53,13 +101,54 @@ public class JwtService {
 	}
 
 	public Boolean validateToken(String token, UserDetails userDetails) {
-		final String email = extractEmail(token);
-		return (email.equals(userDetails.getUsername()) && !isTokenExpired(token));
+		return validateToken(parseToken(token), userDetails);
 	}
 
-	public String generateAccessToken(UserDetails userDetails) {
+	public Boolean validateToken(ParsedToken token, UserDetails userDetails) {
+		final String email = token.subject();
+		return (email != null && email.equals(userDetails.getUsername()) && !token.isExpired());
+	}
+
+	public String generateAccessToken(AuthenticatedUser user) {
 		Map<String, Object> claims = new HashMap<>();
-		return createToken(claims, userDetails.getUsername(), accessTokenExpiration);
+		claims.put(CLAIM_USER_ID, user.id());
+		claims.put(CLAIM_ROLES, user.roles().stream().map(Role::name).toList());
+		claims.put(CLAIM_ENABLED, user.enabled());
+		claims.put(CLAIM_EMAIL_VERIFIED, user.emailVerified());
+		claims.put(CLAIM_NAME, user.name());
+		return createToken(claims, user.getUsername(), accessTokenExpiration);
+	}
+
+	/**
+	 * Check whether the token carries the claims needed to rebuild the principal
+	 * Tokens issued before these claims existed must still go through the user lookup
+	 */
+	public boolean hasPrincipalClaims(ParsedToken token) {
+		return token.claims().get(CLAIM_USER_ID) != null && token.claims().get(CLAIM_ROLES) != null;
+	}
+
+	/**
+	 * Rebuild the principal from the access token claims
+	 * Services that need the User entity take it by id
+	 */
+	public AuthenticatedUser toPrincipal(ParsedToken token) {
+		Claims claims = token.claims();
+
+		Set<Role> roles = EnumSet.noneOf(Role.class);
+		Object rawRoles = claims.get(CLAIM_ROLES);
+		if (rawRoles instanceof Collection<?> roleNames) {
+			for (Object roleName : roleNames) {
+				roles.add(Role.valueOf(roleName.toString()));
+			}
+		}
+
+		return new AuthenticatedUser(
+				((Number) claims.get(CLAIM_USER_ID)).longValue(),
+				token.subject(),
+				claims.get(CLAIM_NAME, String.class),
+				roles,
+				!Boolean.FALSE.equals(claims.get(CLAIM_ENABLED, Boolean.class)),
+				Boolean.TRUE.equals(claims.get(CLAIM_EMAIL_VERIFIED, Boolean.class)));
 	}
 
 	public String generateRefreshToken(UserDetails userDetails) {
@@ -70,19 +159,15 @@ public class JwtService {
 	private String createToken(Map<String, Object> claims, String subject, Long expiration) {
 		return Jwts
 				.builder()
+				.header().keyId(keyRing.getSigningKeyId()).and()
 				.claims(claims)
 				.subject(subject)
 				.issuedAt(new Date(System.currentTimeMillis()))
 				.expiration(new Date(System.currentTimeMillis() + expiration))
-				.signWith(getSignInKey())
+				.signWith(keyRing.getSigningKey())
 				.compact();
 	}
 
-	private SecretKey getSignInKey() {
-		byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-		return Keys.hmacShaKeyFor(keyBytes);
-	}
-
 	public Long getAccessTokenExpiration() {
 		return accessTokenExpiration;
 	}
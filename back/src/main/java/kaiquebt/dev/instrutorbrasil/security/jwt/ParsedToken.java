@@ -0,0 +1,29 @@
+package kaiquebt.dev.instrutorbrasil.security.jwt;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+
+/**
+ * Result of verifying and parsing a JWT once
+ * Exposes the values the authentication filter needs without re-parsing the token
+ */
+public record ParsedToken(Claims claims) {
+
+	public String subject() {
+		return claims.getSubject();
+	}
+
+	public Date expiration() {
+		return claims.getExpiration();
+	}
+
+	public Date issuedAt() {
+		return claims.getIssuedAt();
+	}
+
+	public boolean isExpired() {
+		Date expiration = claims.getExpiration();
+		return expiration != null && expiration.before(new Date());
+	}
+}
@@ -9,6 +9,7 @@ import kaiquebt.dev.instrutorbrasil.dto.response.UserResponse;
 import kaiquebt.dev.instrutorbrasil.model.RefreshToken;
 import kaiquebt.dev.instrutorbrasil.model.User;
 import kaiquebt.dev.instrutorbrasil.model.enums.AuthProvider;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
 import kaiquebt.dev.instrutorbrasil.security.jwt.JwtService;
 import kaiquebt.dev.instrutorbrasil.service.RefreshTokenService;
 import kaiquebt.dev.instrutorbrasil.service.UserService;
@@ -39,7 +40,7 @@ public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationS
 
 		User user = userService.processOAuth2User(oAuth2User, AuthProvider.GOOGLE);
 
-		String accessToken = jwtService.generateAccessToken(user);
+		String accessToken = jwtService.generateAccessToken(AuthenticatedUser.from(user));
 		RefreshToken refreshToken = refreshTokenService.createRefreshToken(user);
 
 		UserResponse userResponse = UserResponse.builder()
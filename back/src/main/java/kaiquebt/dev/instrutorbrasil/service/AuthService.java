@@ -11,6 +11,8 @@ import kaiquebt.dev.instrutorbrasil.exception.UserAlreadyExistsException;
 import kaiquebt.dev.instrutorbrasil.model.*;
 import kaiquebt.dev.instrutorbrasil.model.enums.AuthProvider;
 import kaiquebt.dev.instrutorbrasil.model.enums.Role;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
+import kaiquebt.dev.instrutorbrasil.security.jwt.AccessTokenRevocationService;
 import kaiquebt.dev.instrutorbrasil.security.jwt.JwtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -34,30 +36,31 @@ public class AuthService {
 	private final EmailService emailService;
 	private final PasswordEncoder passwordEncoder;
 	private final AuthenticationManager authenticationManager;
+	private final AccessTokenRevocationService accessTokenRevocationService;
 
-	@Transactional
 	public AuthResponse refreshToken(RefreshTokenRequest request) {
-		RefreshToken refreshToken = refreshTokenService.findByToken(request.getRefreshToken());
-		refreshTokenService.verifyExpiration(refreshToken);
+		// Rotation is atomic in the store, no transaction here so the Redis store never touches the database
+		RefreshTokenService.RotatedToken rotated = refreshTokenService.rotate(request.getRefreshToken());
+		AuthenticatedUser user = rotated.user();
 
-		User user = refreshToken.getUser();
+		if (!user.enabled()) {
+			refreshTokenService.deleteByToken(rotated.token());
+			throw new InvalidCredentialsException("Account is disabled");
+		}
 
 		String accessToken = jwtService.generateAccessToken(user);
 
-		refreshTokenService.deleteByToken(request.getRefreshToken());
-		RefreshToken newRefreshToken = refreshTokenService.createRefreshToken(user);
-
 		UserResponse userResponse = UserResponse.builder()
-				.id(user.getId())
-				.email(user.getEmail())
-				.name(user.getName())
-				.roles(user.getRoles())
-				.emailVerified(user.getEmailVerified())
+				.id(user.id())
+				.email(user.email())
+				.name(user.name())
+				.roles(user.roles())
+				.emailVerified(user.emailVerified())
 				.build();
 
 		return AuthResponse.builder()
 				.accessToken(accessToken)
-				.refreshToken(newRefreshToken.getToken())
+				.refreshToken(rotated.token())
 				.tokenType("Bearer")
 				.expiresIn(jwtService.getAccessTokenExpiration() / 1000)
 				.user(userResponse)
@@ -102,7 +105,8 @@ public class AuthService {
 		emailService.sendEmailVerificationEmail(
 				user.getEmail(),
 				user.getName(),
-				verificationToken.getToken()
+				verificationToken.getToken(),
+				verificationToken.getExpiryDate()
 		);
 
 		return new MessageResponse("Registration successful. Please check your email to verify your account.");
@@ -138,7 +142,7 @@ public class AuthService {
 		}
 
 		// Gerar tokens
-		String accessToken = jwtService.generateAccessToken(user);
+		String accessToken = jwtService.generateAccessToken(AuthenticatedUser.from(user));
 		RefreshToken refreshToken = refreshTokenService.createRefreshToken(user);
 
 		// Construir resposta
@@ -202,7 +206,8 @@ public class AuthService {
 			emailService.sendPasswordResetEmail(
 					user.getEmail(),
 					user.getName(),
-					resetToken.getToken()
+					resetToken.getToken(),
+					resetToken.getExpiryDate()
 			);
 		}
 
@@ -234,8 +239,9 @@ public class AuthService {
 		// Marcar token como usado
 		passwordResetTokenService.markTokenAsUsed(resetToken);
 
-		// Invalidar todos os refresh tokens (logout forçado)
+		// Invalidar todos os refresh tokens e access tokens emitidos (logout forçado)
 		refreshTokenService.deleteByUser(user);
+		accessTokenRevocationService.revokeUser(user.getId());
 
 		// Enviar email de confirmação
 		emailService.sendPasswordResetConfirmationEmail(user.getEmail(), user.getName());
@@ -270,7 +276,8 @@ public class AuthService {
 			emailService.sendEmailVerificationEmail(
 					user.getEmail(),
 					user.getName(),
-					verificationToken.getToken()
+					verificationToken.getToken(),
+					verificationToken.getExpiryDate()
 			);
 		}
 
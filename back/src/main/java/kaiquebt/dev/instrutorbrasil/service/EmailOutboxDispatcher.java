@@ -0,0 +1,193 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import kaiquebt.dev.instrutorbrasil.model.EmailOutbox;
+import kaiquebt.dev.instrutorbrasil.repository.EmailOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends the messages queued in email_outbox by EmailService
+ * Messages are claimed in batches with a lease, rendered and handed to MailDeliveryService as one batch
+ * outside any transaction, then deleted, or retried with exponential backoff until max-attempts
+ * Runs on its own thread, woken up right after a transaction that queued mail commits and polled as a fallback,
+ * so SMTP latency never reaches the request that queued the mail
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxDispatcher {
+
+	private static final TypeReference<Map<String, Object>> VARIABLES_TYPE = new TypeReference<>() {
+	};
+
+	private final EmailOutboxRepository emailOutboxRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final MailDeliveryService mailDeliveryService;
+	private final EmailTemplateRenderer emailTemplateRenderer;
+	private final ObjectMapper objectMapper;
+
+	@Value("${app.email.from}")
+	private String emailFrom;
+
+	@Value("${app.email.from-name}")
+	private String emailFromName;
+
+	@Value("${app.email.outbox.batch-size:50}")
+	private int batchSize;
+
+	@Value("${app.email.outbox.max-attempts:8}")
+	private int maxAttempts;
+
+	@Value("${app.email.outbox.initial-backoff-ms:30000}")
+	private long initialBackoffMillis;
+
+	@Value("${app.email.outbox.max-backoff-ms:3600000}")
+	private long maxBackoffMillis;
+
+	@Value("${app.email.outbox.lease-ms:300000}")
+	private long leaseMillis;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "email-outbox");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean pending = new AtomicBoolean();
+
+	/**
+	 * Fallback for retries, messages queued by other nodes and wake-ups that were missed
+	 */
+	@Scheduled(fixedDelayString = "${app.email.outbox.poll-interval-ms:5000}")
+	public void poll() {
+		wakeUp();
+	}
+
+	/**
+	 * Drain the outbox on the dispatcher thread, at most one drain is queued at a time
+	 */
+	public void wakeUp() {
+		if (pending.compareAndSet(false, true)) {
+			executor.execute(this::drain);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void drain() {
+		// Cleared first, so a wake-up during this drain queues another one
+		pending.set(false);
+		try {
+			while (dispatchBatch() == batchSize) {
+				// Keep going while batches come back full
+			}
+		} catch (RuntimeException e) {
+			log.warn("Email outbox dispatch failed: {}", e.getMessage());
+		}
+	}
+
+	private int dispatchBatch() {
+		Instant now = Instant.now();
+		List<EmailOutbox> batch = transactionTemplate.execute(status ->
+				emailOutboxRepository.claimBatch(now, now.plusMillis(leaseMillis), batchSize));
+		if (batch == null || batch.isEmpty()) {
+			return 0;
+		}
+
+		Map<MimeMessage, EmailOutbox> messages = new LinkedHashMap<>();
+		for (EmailOutbox email : batch) {
+			if (email.getExpiresAt() != null && !email.getExpiresAt().isAfter(now)) {
+				log.warn("Dropping email '{}' to: {}, its link expired before it could be sent", email.getSubject(), email.getRecipient());
+				transactionTemplate.executeWithoutResult(status ->
+						emailOutboxRepository.markFailed(email.getId(), "Link expired before the message could be sent"));
+				continue;
+			}
+			try {
+				messages.put(render(email), email);
+			} catch (Exception e) {
+				failed(email, e);
+			}
+		}
+
+		Map<MimeMessage, Exception> failures = mailDeliveryService.send(new ArrayList<>(messages.keySet()));
+
+		List<Long> sent = new ArrayList<>();
+		messages.forEach((message, email) -> {
+			Exception failure = failures.get(message);
+			if (failure != null) {
+				failed(email, failure);
+			} else {
+				sent.add(email.getId());
+				log.info("Email '{}' sent to: {}", email.getSubject(), email.getRecipient());
+			}
+		});
+
+		if (!sent.isEmpty()) {
+			emailOutboxRepository.deleteAllByIdInBatch(sent);
+		}
+		return batch.size();
+	}
+
+	private MimeMessage render(EmailOutbox email) throws Exception {
+		String htmlContent = emailTemplateRenderer.render(email.getTemplate(),
+				objectMapper.readValue(email.getVariables(), VARIABLES_TYPE));
+
+		MimeMessage message = mailDeliveryService.createMimeMessage();
+		MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+		helper.setFrom(emailFrom, emailFromName);
+		helper.setTo(email.getRecipient());
+		helper.setSubject(email.getSubject());
+		helper.setText(htmlContent, true);
+
+		return message;
+	}
+
+	private void failed(EmailOutbox email, Exception e) {
+		String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+		if (error.length() > 500) {
+			error = error.substring(0, 500);
+		}
+		String lastError = error;
+
+		if (email.getAttempts() >= maxAttempts) {
+			log.error("Giving up on email '{}' to: {} after {} attempts", email.getSubject(), email.getRecipient(), email.getAttempts(), e);
+			transactionTemplate.executeWithoutResult(status -> emailOutboxRepository.markFailed(email.getId(), lastError));
+			return;
+		}
+
+		Instant nextAttemptAt = Instant.now().plusMillis(backoff(email.getAttempts()));
+		log.warn("Failed to send email '{}' to: {}, retrying at {}: {}", email.getSubject(), email.getRecipient(), nextAttemptAt, lastError);
+		transactionTemplate.executeWithoutResult(status -> emailOutboxRepository.reschedule(email.getId(), nextAttemptAt, lastError));
+	}
+
+	/**
+	 * Exponential backoff with up to 20% jitter, so messages that failed together don't retry together
+	 */
+	private long backoff(int attempts) {
+		long delay = initialBackoffMillis << Math.min(attempts - 1, 20);
+		delay = Math.min(delay, maxBackoffMillis);
+		return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+	}
+}
@@ -1,114 +1,93 @@
 package kaiquebt.dev.instrutorbrasil.service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kaiquebt.dev.instrutorbrasil.model.EmailOutbox;
+import kaiquebt.dev.instrutorbrasil.repository.EmailOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-
-import java.io.UnsupportedEncodingException;
-
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
-
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Queues emails in the email_outbox table, EmailOutboxDispatcher renders and sends them
+ * The row joins the caller's transaction, so mail is only sent if that transaction commits and survives restarts
+ *
+ * Links carrying a token are the only place the raw token is kept. The row expires with the token,
+ * and is deleted once sent or emptied once it fails, so the link never outlives the token's validity
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
-	private final JavaMailSender mailSender;
-	private final TemplateEngine templateEngine;
-
-	@Value("${app.email.from}")
-	private String emailFrom;
-
-	@Value("${app.email.from-name}")
-	private String emailFromName;
+	private final EmailOutboxRepository emailOutboxRepository;
+	private final EmailOutboxDispatcher emailOutboxDispatcher;
+	private final ObjectMapper objectMapper;
 
 	@Value("${app.frontend.url}")
 	private String frontendUrl;
 
-	@Async
+	@Transactional
 	public void sendWelcomeEmail(String to, String name) {
-		try {
-			Context context = new Context();
-			context.setVariable("name", name);
-
-			String htmlContent = templateEngine.process("email/welcome", context);
-
-			sendHtmlEmail(to, "Welcome to InstrutorBrasil!", htmlContent);
-			log.info("Welcome email sent to: {}", to);
-		} catch (Exception e) {
-			log.error("Failed to send welcome email to: {}", to, e);
-		}
+		enqueue(to, "Welcome to InstrutorBrasil!", "email/welcome", Map.of("name", name), null);
 	}
 
-	@Async
-	public void sendPasswordResetEmail(String to, String name, String resetToken) {
-		try {
-			String resetLink = frontendUrl + "/reset-password?token=" + resetToken;
-
-			Context context = new Context();
-			context.setVariable("name", name);
-			context.setVariable("resetLink", resetLink);
-			context.setVariable("expirationTime", "1 hour");
+	@Transactional
+	public void sendPasswordResetEmail(String to, String name, String resetToken, Instant expiresAt) {
+		String resetLink = frontendUrl + "/reset-password?token=" + resetToken;
 
-			String htmlContent = templateEngine.process("email/password-reset", context);
-
-			sendHtmlEmail(to, "Password Reset Request", htmlContent);
-			log.info("Password reset email sent to: {}", to);
-		} catch (Exception e) {
-			log.error("Failed to send password reset email to: {}", to, e);
-		}
+		enqueue(to, "Password Reset Request", "email/password-reset", Map.of(
+				"name", name,
+				"resetLink", resetLink,
+				"expirationTime", "1 hour"), expiresAt);
 	}
 
-	@Async
+	@Transactional
 	public void sendPasswordResetConfirmationEmail(String to, String name) {
-		try {
-			Context context = new Context();
-			context.setVariable("name", name);
+		enqueue(to, "Password Changed Successfully", "email/password-reset-confirmation", Map.of("name", name), null);
+	}
 
-			String htmlContent = templateEngine.process("email/password-reset-confirmation", context);
+	@Transactional
+	public void sendEmailVerificationEmail(String to, String name, String verificationToken, Instant expiresAt) {
+		String verificationLink = frontendUrl + "/verify-email?token=" + verificationToken;
 
-			sendHtmlEmail(to, "Password Changed Successfully", htmlContent);
-			log.info("Password reset confirmation email sent to: {}", to);
-		} catch (Exception e) {
-			log.error("Failed to send password reset confirmation email to: {}", to, e);
-		}
+		enqueue(to, "Verify Your Email Address", "email/email-verification", Map.of(
+				"name", name,
+				"verificationLink", verificationLink,
+				"expirationTime", "24 hours"), expiresAt);
 	}
 
-	@Async
-	public void sendEmailVerificationEmail(String to, String name, String verificationToken) {
+	private void enqueue(String to, String subject, String template, Map<String, Object> variables, Instant expiresAt) {
+		String json;
 		try {
-			String verificationLink = frontendUrl + "/verify-email?token=" + verificationToken;
-
-			Context context = new Context();
-			context.setVariable("name", name);
-			context.setVariable("verificationLink", verificationLink);
-			context.setVariable("expirationTime", "24 hours");
-
-			String htmlContent = templateEngine.process("email/email-verification", context);
-
-			sendHtmlEmail(to, "Verify Your Email Address", htmlContent);
-			log.info("Email verification email sent to: {}", to);
-		} catch (Exception e) {
-			log.error("Failed to send email verification email to: {}", to, e);
+			json = objectMapper.writeValueAsString(variables);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Failed to serialize email variables", e);
 		}
-	}
-
-	private void sendHtmlEmail(String to, String subject, String htmlContent) throws MessagingException, UnsupportedEncodingException {
-		MimeMessage message = mailSender.createMimeMessage();
-		MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-		helper.setFrom(emailFrom, emailFromName);
-		helper.setTo(to);
-		helper.setSubject(subject);
-		helper.setText(htmlContent, true);
 
-		mailSender.send(message);
+		emailOutboxRepository.save(EmailOutbox.builder()
+				.recipient(to)
+				.subject(subject)
+				.template(template)
+				.variables(json)
+				.nextAttemptAt(Instant.now())
+				.expiresAt(expiresAt)
+				.build());
+		log.debug("Email '{}' queued for: {}", subject, to);
+
+		// Send right after commit instead of waiting for the next poll
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				emailOutboxDispatcher.wakeUp();
+			}
+		});
 	}
 }
@@ -0,0 +1,140 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the email templates under templates/email
+ * Uses its own template engine that always caches parsed templates, independent of spring.thymeleaf.cache,
+ * since the email templates ship inside the jar and never change at runtime
+ * Every template is parsed once at startup, so the first mail after a deploy doesn't pay for it,
+ * and output goes into a per-thread buffer that is reused between renders
+ */
+@Service
+@Slf4j
+public class EmailTemplateRenderer {
+
+	static final List<String> TEMPLATES = List.of(
+			"email/welcome",
+			"email/password-reset",
+			"email/password-reset-confirmation",
+			"email/email-verification");
+
+	// Buffers that grew past this are dropped instead of being kept for the next render
+	private static final int MAX_RETAINED_CHARS = 64 * 1024;
+
+	private final SpringTemplateEngine templateEngine;
+	private final MeterRegistry meterRegistry;
+	private final ThreadLocal<StringBuilderWriter> buffers = ThreadLocal.withInitial(StringBuilderWriter::new);
+
+	public EmailTemplateRenderer(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+
+		ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+		resolver.setPrefix("templates/");
+		resolver.setSuffix(".html");
+		resolver.setTemplateMode(TemplateMode.HTML);
+		resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		resolver.setCacheable(true);
+		resolver.setCacheTTLMs(null);
+
+		templateEngine = new SpringTemplateEngine();
+		templateEngine.setTemplateResolver(resolver);
+		templateEngine.setEnableSpringELCompiler(true);
+	}
+
+	/**
+	 * Parse every template up front, rendering with no variables leaves the parsed template in the cache
+	 */
+	@PostConstruct
+	public void preload() {
+		for (String template : TEMPLATES) {
+			long start = System.nanoTime();
+			templateEngine.process(template, new Context(), Writer.nullWriter());
+			log.debug("Preloaded email template {} in {} µs", template, (System.nanoTime() - start) / 1000);
+		}
+		log.info("Preloaded {} email templates", TEMPLATES.size());
+	}
+
+	/**
+	 * Render a template with the given variables
+	 *
+	 * @param template Template name, e.g. email/welcome
+	 * @param variables Template variables
+	 * @return The rendered HTML
+	 */
+	public String render(String template, Map<String, Object> variables) {
+		Context context = new Context();
+		context.setVariables(variables);
+
+		StringBuilderWriter writer = buffers.get();
+		Timer.Sample sample = Timer.start(meterRegistry);
+		try {
+			templateEngine.process(template, context, writer);
+			return writer.toString();
+		} finally {
+			sample.stop(Timer.builder("email.render")
+					.description("Time to render an email template")
+					.tag("template", template)
+					.register(meterRegistry));
+			if (writer.builder.capacity() > MAX_RETAINED_CHARS) {
+				buffers.remove();
+			} else {
+				writer.builder.setLength(0);
+			}
+		}
+	}
+
+	/**
+	 * Unsynchronized writer over a StringBuilder, unlike StringWriter which locks on every write
+	 */
+	private static class StringBuilderWriter extends Writer {
+		private final StringBuilder builder = new StringBuilder(8 * 1024);
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+			builder.append(chars, offset, length);
+		}
+
+		@Override
+		public void write(String string, int offset, int length) {
+			builder.append(string, offset, offset + length);
+		}
+
+		@Override
+		public void write(int c) {
+			builder.append((char) c);
+		}
+
+		@Override
+		public Writer append(CharSequence sequence) {
+			builder.append(sequence);
+			return this;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public String toString() {
+			return builder.toString();
+		}
+	}
+}
@@ -6,13 +6,13 @@ import kaiquebt.dev.instrutorbrasil.exception.TokenNotFoundException;
 import kaiquebt.dev.instrutorbrasil.model.EmailVerificationToken;
 import kaiquebt.dev.instrutorbrasil.model.User;
 import kaiquebt.dev.instrutorbrasil.repository.EmailVerificationTokenRepository;
+import kaiquebt.dev.instrutorbrasil.security.OpaqueTokens;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -28,9 +28,11 @@ public class EmailVerificationTokenService {
 		// Invalidar tokens anteriores do mesmo usuário
 		emailVerificationTokenRepository.deleteByUser(user);
 
+		String rawToken = OpaqueTokens.generate();
 		EmailVerificationToken token = EmailVerificationToken.builder()
 				.user(user)
-				.token(UUID.randomUUID().toString())
+				.token(rawToken)
+				.tokenHash(OpaqueTokens.hash(rawToken))
 				.expiryDate(Instant.now().plusMillis(emailVerificationTokenExpiration))
 				.used(false)
 				.build();
@@ -39,7 +41,7 @@ public class EmailVerificationTokenService {
 	}
 
 	public EmailVerificationToken findByToken(String token) {
-		return emailVerificationTokenRepository.findByToken(token)
+		return emailVerificationTokenRepository.findByTokenHash(OpaqueTokens.hash(token))
 				.orElseThrow(() -> new TokenNotFoundException("Email verification token not found"));
 	}
 
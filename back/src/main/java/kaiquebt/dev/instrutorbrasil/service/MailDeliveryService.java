@@ -0,0 +1,340 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers batches of messages over a small pool of SMTP connections that stay open between batches,
+ * so the connect, STARTTLS and AUTH handshake is paid once per connection instead of once per message
+ * A batch is split across up to pool-size connections and sent in parallel
+ * Connections are replaced after max-messages-per-connection messages (providers cap it) and closed when idle
+ * A batch waits at most batch-timeout-ms, the messages not sent by then are reported as failed
+ * Each SMTP call is bounded by the mail.smtp.*timeout properties, without them a stalled server blocks a worker forever
+ *
+ * Any other JavaMailSender (e.g. the mock one) is used as is, with all messages of a batch in one send call
+ */
+@Service
+@Slf4j
+public class MailDeliveryService {
+
+	// Outcome marker for a message that went out, ConcurrentHashMap takes no null values
+	private static final Exception SENT = new Exception("sent");
+
+	private final JavaMailSender mailSender;
+	// Set only for a plain SMTP sender, whose session and credentials the pool reuses
+	private final JavaMailSenderImpl smtpSender;
+	private final int poolSize;
+	private final int maxMessagesPerConnection;
+	private final long idleTimeoutMillis;
+	private final long batchTimeoutMillis;
+
+	private final BlockingQueue<PooledTransport> idle = new LinkedBlockingQueue<>();
+	private final ExecutorService executor;
+	private final Timer sendSuccess;
+	private final Timer sendFailure;
+	private final Timer connectTimer;
+
+	public MailDeliveryService(
+			JavaMailSender mailSender,
+			MeterRegistry meterRegistry,
+			@Value("${app.email.delivery.pool-size:2}") int poolSize,
+			@Value("${app.email.delivery.max-messages-per-connection:100}") int maxMessagesPerConnection,
+			@Value("${app.email.delivery.idle-timeout-ms:60000}") long idleTimeoutMillis,
+			@Value("${app.email.delivery.batch-timeout-ms:120000}") long batchTimeoutMillis) {
+		this.mailSender = mailSender;
+		this.smtpSender = mailSender.getClass() == JavaMailSenderImpl.class ? (JavaMailSenderImpl) mailSender : null;
+		this.poolSize = Math.max(1, poolSize);
+		this.maxMessagesPerConnection = Math.max(1, maxMessagesPerConnection);
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.batchTimeoutMillis = batchTimeoutMillis;
+
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(this.poolSize, runnable -> {
+			Thread thread = new Thread(runnable, "mail-delivery-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.sendSuccess = sendTimer(meterRegistry, "success");
+		this.sendFailure = sendTimer(meterRegistry, "failure");
+		this.connectTimer = Timer.builder("mail.delivery.connect")
+				.description("Time to open and authenticate an SMTP connection")
+				.register(meterRegistry);
+		Gauge.builder("mail.delivery.connections.idle", idle, BlockingQueue::size)
+				.description("Open SMTP connections waiting for the next batch")
+				.register(meterRegistry);
+
+		if (smtpSender == null) {
+			log.info("Mail sender {} is not a plain SMTP sender, SMTP connections are not pooled", mailSender.getClass().getName());
+		}
+	}
+
+	public MimeMessage createMimeMessage() {
+		return mailSender.createMimeMessage();
+	}
+
+	/**
+	 * Send a batch of messages, every message is attempted even if others fail
+	 *
+	 * @param messages The messages to send
+	 * @return The messages that could not be sent, with their error
+	 */
+	public Map<MimeMessage, Exception> send(List<MimeMessage> messages) {
+		if (messages.isEmpty()) {
+			return Map.of();
+		}
+		if (smtpSender == null) {
+			return sendUnpooled(messages);
+		}
+
+		int connections = Math.min(poolSize, messages.size());
+		List<List<MimeMessage>> slices = new ArrayList<>(connections);
+		for (int i = 0; i < connections; i++) {
+			slices.add(new ArrayList<>());
+		}
+		for (int i = 0; i < messages.size(); i++) {
+			slices.get(i % connections).add(messages.get(i));
+		}
+
+		// Outcome of every message as soon as it is known, so a batch cut short keeps what was already sent
+		Map<MimeMessage, Exception> outcomes = new ConcurrentHashMap<>();
+		List<Future<?>> futures = new ArrayList<>(connections);
+		for (List<MimeMessage> slice : slices) {
+			futures.add(executor.submit(() -> sendOverConnection(slice, outcomes)));
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeoutMillis);
+		Map<MimeMessage, Exception> failures = new HashMap<>();
+		for (int i = 0; i < connections; i++) {
+			Exception error = null;
+			try {
+				futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				futures.get(i).cancel(true);
+				error = new MailSendException("Batch not sent within " + batchTimeoutMillis + " ms");
+			} catch (InterruptedException e) {
+				futures.get(i).cancel(true);
+				Thread.currentThread().interrupt();
+				error = e;
+			} catch (ExecutionException e) {
+				error = e.getCause() instanceof Exception exception ? exception : e;
+			}
+
+			for (MimeMessage message : slices.get(i)) {
+				Exception outcome = outcomes.getOrDefault(message, error);
+				if (outcome != SENT) {
+					failures.put(message, outcome);
+				}
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Close connections that sat idle long enough for the server to drop them anyway
+	 */
+	@Scheduled(fixedDelay = 30000)
+	public void evictIdle() {
+		long now = System.currentTimeMillis();
+		int size = idle.size();
+		for (int i = 0; i < size; i++) {
+			PooledTransport pooled = idle.poll();
+			if (pooled == null) {
+				return;
+			}
+			if (now - pooled.lastUsed > idleTimeoutMillis) {
+				close(pooled);
+			} else {
+				idle.offer(pooled);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+		PooledTransport pooled;
+		while ((pooled = idle.poll()) != null) {
+			close(pooled);
+		}
+	}
+
+	/**
+	 * Send the messages one after the other on one connection, recording each outcome in outcomes (SENT or the error)
+	 * Stops at the next message once the batch was cancelled
+	 */
+	private void sendOverConnection(List<MimeMessage> messages, Map<MimeMessage, Exception> outcomes) {
+		PooledTransport pooled = null;
+
+		for (MimeMessage message : messages) {
+			if (Thread.currentThread().isInterrupted()) {
+				if (pooled != null) {
+					close(pooled);
+				}
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				PooledTransport previous = pooled;
+				pooled = null;
+				pooled = ensureConnected(previous);
+				try {
+					sendMessage(pooled, message);
+				} catch (MessagingException e) {
+					if (pooled.transport.isConnected()) {
+						// The server refused this message, the connection is still good
+						throw e;
+					}
+					// Dropped mid-batch, retry once on a fresh connection
+					close(pooled);
+					pooled = null;
+					pooled = ensureConnected(null);
+					sendMessage(pooled, message);
+				}
+				sendSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				outcomes.put(message, SENT);
+			} catch (MessagingException | RuntimeException e) {
+				sendFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				outcomes.put(message, e);
+			}
+		}
+
+		if (pooled != null) {
+			release(pooled);
+		}
+	}
+
+	private void sendMessage(PooledTransport pooled, MimeMessage message) throws MessagingException {
+		if (message.getSentDate() == null) {
+			message.setSentDate(new Date());
+		}
+		message.saveChanges();
+		pooled.transport.sendMessage(message, message.getAllRecipients());
+		pooled.sent++;
+	}
+
+	/**
+	 * Keep using the connection in hand until its message cap, otherwise take an idle one or open a new one
+	 * Idle connections are checked with a NOOP first, the one in hand was just used successfully
+	 */
+	private PooledTransport ensureConnected(PooledTransport current) throws MessagingException {
+		if (current != null) {
+			if (current.sent < maxMessagesPerConnection) {
+				return current;
+			}
+			close(current);
+		}
+
+		PooledTransport pooled;
+		while ((pooled = idle.poll()) != null) {
+			boolean usable = pooled.sent < maxMessagesPerConnection
+					&& System.currentTimeMillis() - pooled.lastUsed <= idleTimeoutMillis
+					&& pooled.transport.isConnected();
+			if (usable) {
+				return pooled;
+			}
+			close(pooled);
+		}
+		return connect();
+	}
+
+	private PooledTransport connect() throws MessagingException {
+		long start = System.nanoTime();
+		// Same fallback as JavaMailSenderImpl, the protocol is only set when configured explicitly
+		String protocol = smtpSender.getProtocol();
+		if (protocol == null) {
+			protocol = smtpSender.getSession().getProperty("mail.transport.protocol");
+		}
+		Transport transport = smtpSender.getSession().getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+		transport.connect(smtpSender.getHost(), smtpSender.getPort(), smtpSender.getUsername(), smtpSender.getPassword());
+		connectTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		return new PooledTransport(transport);
+	}
+
+	private void release(PooledTransport pooled) {
+		pooled.lastUsed = System.currentTimeMillis();
+		if (pooled.sent < maxMessagesPerConnection && idle.size() < poolSize) {
+			idle.offer(pooled);
+		} else {
+			close(pooled);
+		}
+	}
+
+	private static void close(PooledTransport pooled) {
+		try {
+			pooled.transport.close();
+		} catch (MessagingException e) {
+			log.debug("Failed to close SMTP connection: {}", e.getMessage());
+		}
+	}
+
+	private Map<MimeMessage, Exception> sendUnpooled(List<MimeMessage> messages) {
+		long start = System.nanoTime();
+		Map<MimeMessage, Exception> failures = new HashMap<>();
+		try {
+			mailSender.send(messages.toArray(new MimeMessage[0]));
+		} catch (MailSendException e) {
+			e.getFailedMessages().forEach((message, error) -> failures.put((MimeMessage) message, error));
+			if (failures.isEmpty()) {
+				messages.forEach(message -> failures.put(message, e));
+			}
+		} catch (MailException e) {
+			messages.forEach(message -> failures.put(message, e));
+		}
+
+		long perMessage = (System.nanoTime() - start) / messages.size();
+		for (MimeMessage message : messages) {
+			(failures.containsKey(message) ? sendFailure : sendSuccess).record(perMessage, TimeUnit.NANOSECONDS);
+		}
+		return failures;
+	}
+
+	private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+		return Timer.builder("mail.delivery.send")
+				.description("Time to send one message, connection setup included when it had to connect")
+				.tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Open connection with the number of messages it carried, only used by one thread at a time
+	 */
+	private static class PooledTransport {
+		private final Transport transport;
+		private int sent;
+		private long lastUsed = System.currentTimeMillis();
+
+		PooledTransport(Transport transport) {
+			this.transport = transport;
+		}
+	}
+}
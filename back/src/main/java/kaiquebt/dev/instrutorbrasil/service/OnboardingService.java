@@ -18,6 +18,9 @@ import kaiquebt.dev.instrutorbrasil.model.enums.*;
 import kaiquebt.dev.instrutorbrasil.repository.OnboardingDocumentRepository;
 import kaiquebt.dev.instrutorbrasil.repository.UserOnboardingRepository;
 import kaiquebt.dev.instrutorbrasil.repository.UserRepository;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
+import kaiquebt.dev.instrutorbrasil.security.CustomUserDetailsService;
+import kaiquebt.dev.instrutorbrasil.security.jwt.AccessTokenRevocationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -39,6 +42,8 @@ public class OnboardingService {
 	private final OnboardingDocumentRepository documentRepository;
 	private final UserRepository userRepository;
 	private final S3Service s3Service;
+	private final AccessTokenRevocationService accessTokenRevocationService;
+	private final CustomUserDetailsService userDetailsService;
 
 	// @Value("${app.onboarding.retry-cooldown-days:30}")
 	// private int retryCooldownDays;
@@ -47,7 +52,8 @@ public class OnboardingService {
 	private String s3Bucket;
 
 	@Transactional
-	public OnboardingResponse startOnboarding(User user, OnboardingRequest request) {
+	public OnboardingResponse startOnboarding(AuthenticatedUser principal, OnboardingRequest request) {
+		User user = userRepository.getReferenceById(principal.id());
 		validateCanStartOnboarding(user);
 
 		String expertiseAreasStr = request.getExpertiseAreas().stream()
@@ -77,11 +83,11 @@ public class OnboardingService {
 	}
 
 	@Transactional
-	public MessageResponse confirmUpload(User user, Long documentId, ConfirmUploadRequest request) {
+	public MessageResponse confirmUpload(AuthenticatedUser principal, Long documentId, ConfirmUploadRequest request) {
 		OnboardingDocument document = documentRepository.findById(documentId)
 				.orElseThrow(() -> new IllegalArgumentException("Document not found"));
 
-		if (!document.getOnboarding().getUser().getId().equals(user.getId())) {
+		if (!document.getOnboarding().getUser().getId().equals(principal.id())) {
 			throw new IllegalStateException("Document does not belong to user");
 		}
 
@@ -104,7 +110,8 @@ public class OnboardingService {
 	}
 
 	@Transactional
-	public DocumentUploadResponse addDocument(User user, DocumentRequest request) {
+	public DocumentUploadResponse addDocument(AuthenticatedUser principal, DocumentRequest request) {
+		User user = userRepository.getReferenceById(principal.id());
 		UserOnboarding onboarding = getActiveOnboarding(user);
 
 		validateDocumentAddition(onboarding, request.getPurpose(), request.getSide());
@@ -164,7 +171,8 @@ public class OnboardingService {
 	}
 
 	@Transactional
-	public void removeDocument(User user, Long documentId) {
+	public void removeDocument(AuthenticatedUser principal, Long documentId) {
+		User user = userRepository.getReferenceById(principal.id());
 		UserOnboarding onboarding = getActiveOnboarding(user);
 
 		OnboardingDocument document = documentRepository.findById(documentId)
@@ -179,7 +187,8 @@ public class OnboardingService {
 	}
 
 	@Transactional
-	public MessageResponse submitOnboarding(User user) {
+	public MessageResponse submitOnboarding(AuthenticatedUser principal) {
+		User user = userRepository.getReferenceById(principal.id());
 		UserOnboarding onboarding = getActiveOnboarding(user);
 
 		if (onboarding.getStatus() != OnboardingStatus.PENDING) {
@@ -196,7 +205,7 @@ public class OnboardingService {
 	}
 
 	@Transactional
-	public OnboardingResponse reviewOnboarding(Long onboardingId, User reviewer, ReviewOnboardingRequest request) {
+	public OnboardingResponse reviewOnboarding(Long onboardingId, AuthenticatedUser reviewer, ReviewOnboardingRequest request) {
 		UserOnboarding onboarding = onboardingRepository.findById(onboardingId)
 				.orElseThrow(() -> new IllegalArgumentException("Onboarding not found"));
 
@@ -204,7 +213,7 @@ public class OnboardingService {
 			throw new IllegalStateException("Onboarding is not in review state");
 		}
 
-		onboarding.setReviewer(reviewer);
+		onboarding.setReviewer(userRepository.getReferenceById(reviewer.id()));
 		onboarding.setReviewedAt(Instant.now());
 
 		if (request.getApproved()) {
@@ -213,6 +222,10 @@ public class OnboardingService {
 			User user = onboarding.getUser();
 			user.getRoles().add(Role.INSTRUCTOR);
 			userRepository.save(user);
+			userDetailsService.evict(user.getEmail());
+
+			// Roles travel inside the access token, force a refresh so the new role is picked up
+			accessTokenRevocationService.revokeUser(user.getId());
 		} else {
 			if (request.getRejectionType() == RejectionType.PERMANENT) {
 				onboarding.setStatus(OnboardingStatus.PERMANENTLY_REJECTED);
@@ -230,7 +243,7 @@ public class OnboardingService {
 	}
 
 	@Transactional
-	public void reviewDocument(Long documentId, User reviewer, DocumentReviewRequest request) {
+	public void reviewDocument(Long documentId, AuthenticatedUser reviewer, DocumentReviewRequest request) {
 		OnboardingDocument document = documentRepository.findById(documentId)
 				.orElseThrow(() -> new IllegalArgumentException("Document not found"));
 
@@ -253,7 +266,8 @@ public class OnboardingService {
 	}
 
 	@Transactional(readOnly = true)
-	public OnboardingResponse getOnboarding(User user) {
+	public OnboardingResponse getOnboarding(AuthenticatedUser principal) {
+		User user = userRepository.getReferenceById(principal.id());
 		UserOnboarding onboarding = onboardingRepository
 				.findFirstByUserOrderByCreatedAtDesc(user)
 				.orElseThrow(() -> new IllegalArgumentException("No onboarding found for user"));
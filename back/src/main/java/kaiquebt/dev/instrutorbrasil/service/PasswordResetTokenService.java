@@ -6,13 +6,13 @@ import kaiquebt.dev.instrutorbrasil.exception.TokenNotFoundException;
 import kaiquebt.dev.instrutorbrasil.model.PasswordResetToken;
 import kaiquebt.dev.instrutorbrasil.model.User;
 import kaiquebt.dev.instrutorbrasil.repository.PasswordResetTokenRepository;
+import kaiquebt.dev.instrutorbrasil.security.OpaqueTokens;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -28,9 +28,11 @@ public class PasswordResetTokenService {
 		// Invalidar tokens anteriores do mesmo usuário
 		passwordResetTokenRepository.deleteByUser(user);
 
+		String rawToken = OpaqueTokens.generate();
 		PasswordResetToken token = PasswordResetToken.builder()
 				.user(user)
-				.token(UUID.randomUUID().toString())
+				.token(rawToken)
+				.tokenHash(OpaqueTokens.hash(rawToken))
 				.expiryDate(Instant.now().plusMillis(passwordResetTokenExpiration))
 				.used(false)
 				.build();
@@ -39,7 +41,7 @@ public class PasswordResetTokenService {
 	}
 
 	public PasswordResetToken findByToken(String token) {
-		return passwordResetTokenRepository.findByToken(token)
+		return passwordResetTokenRepository.findByTokenHash(OpaqueTokens.hash(token))
 				.orElseThrow(() -> new TokenNotFoundException("Password reset token not found"));
 	}
 
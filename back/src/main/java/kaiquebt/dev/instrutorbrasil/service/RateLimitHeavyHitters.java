@@ -0,0 +1,79 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving sketch of the most throttled rate limit keys
+ * Tracks at most capacity keys: when full, the key with the smallest count is replaced and the newcomer
+ * inherits that count as its error, so any key throttled more than total / capacity times is guaranteed to be listed
+ * Only fed with rejected attempts, so contention on the lock is bounded by the rejection rate
+ */
+public class RateLimitHeavyHitters {
+
+	private final int capacity;
+	private final Map<String, Counter> counters;
+
+	public RateLimitHeavyHitters(int capacity) {
+		this.capacity = Math.max(1, capacity);
+		this.counters = new HashMap<>(this.capacity * 2);
+	}
+
+	public synchronized void offer(String key) {
+		Counter counter = counters.get(key);
+		if (counter != null) {
+			counter.count++;
+			return;
+		}
+
+		if (counters.size() < capacity) {
+			counters.put(key, new Counter(1, 0));
+			return;
+		}
+
+		// Evict the minimum, linear scan is fine for a few hundred entries
+		Map.Entry<String, Counter> min = null;
+		for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+			if (min == null || entry.getValue().count < min.getValue().count) {
+				min = entry;
+			}
+		}
+		counters.remove(min.getKey());
+		counters.put(key, new Counter(min.getValue().count + 1, min.getValue().count));
+	}
+
+	/**
+	 * Get the most throttled keys
+	 *
+	 * @param limit Maximum number of keys to return
+	 * @return Keys ordered by estimated count, highest first
+	 */
+	public synchronized List<HeavyHitter> top(int limit) {
+		List<HeavyHitter> hitters = new ArrayList<>(counters.size());
+		counters.forEach((key, counter) -> hitters.add(new HeavyHitter(key, counter.count, counter.error)));
+		hitters.sort(Comparator.comparingLong(HeavyHitter::count).reversed());
+		return hitters.size() > limit ? List.copyOf(hitters.subList(0, limit)) : hitters;
+	}
+
+	public synchronized void reset() {
+		counters.clear();
+	}
+
+	/**
+	 * A throttled key with its estimated count, which overestimates the real one by at most error
+	 */
+	public record HeavyHitter(String key, long count, long error) {}
+
+	private static class Counter {
+		private long count;
+		private final long error;
+
+		Counter(long count, long error) {
+			this.count = count;
+			this.error = error;
+		}
+	}
+}
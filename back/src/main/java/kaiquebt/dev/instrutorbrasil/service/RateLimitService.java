@@ -1,55 +1,158 @@
 package kaiquebt.dev.instrutorbrasil.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kaiquebt.dev.instrutorbrasil.config.RateLimitResilienceProperties;
+import kaiquebt.dev.instrutorbrasil.dto.response.RateLimitStatsResponse;
 import kaiquebt.dev.instrutorbrasil.exception.RateLimitExceededException;
-import kaiquebt.dev.instrutorbrasil.service.storage.InMemoryRateLimitStorage;
+import kaiquebt.dev.instrutorbrasil.service.storage.AttemptResult;
+import kaiquebt.dev.instrutorbrasil.service.storage.LimitSpec;
+import kaiquebt.dev.instrutorbrasil.service.storage.MeteredRateLimitStorage;
 import kaiquebt.dev.instrutorbrasil.service.storage.RateLimitStorage;
 import kaiquebt.dev.instrutorbrasil.service.storage.RedisRateLimitStorage;
-import lombok.RequiredArgsConstructor;
+import kaiquebt.dev.instrutorbrasil.service.storage.ResilientRateLimitStorage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class RateLimitService {
 
-	private final RateLimitStorage storage;
+	private final MeteredRateLimitStorage storage;
+	private final MeterRegistry meterRegistry;
+	private final RateLimitHeavyHitters heavyHitters;
+	private final Map<String, EndpointCounters> endpointCounters = new ConcurrentHashMap<>();
+
+	public RateLimitService(
+			RateLimitStorage storage,
+			RateLimitResilienceProperties resilience,
+			MeterRegistry meterRegistry,
+			@Value("${app.rate-limit.heavy-hitters.capacity:200}") int heavyHittersCapacity) {
+		// Redis storages go behind the circuit breaker, so a Redis outage degrades to the fail mode instead of timeouts
+		if (storage instanceof RedisRateLimitStorage && resilience.isEnabled()) {
+			storage = new ResilientRateLimitStorage(storage, resilience);
+		}
+		this.storage = new MeteredRateLimitStorage(storage, meterRegistry);
+		this.meterRegistry = meterRegistry;
+		this.heavyHitters = new RateLimitHeavyHitters(heavyHittersCapacity);
+	}
 
 	/**
 	 * Check if the request is allowed based on rate limit
 	 *
-	 * @param key Unique identifier (IP address or email)
-	 * @param maxAttempts Maximum number of attempts allowed
-	 * @param timeWindowSeconds Time window in seconds
+	 * @param spec Unique identifier (IP address or email), limit, time window and algorithm
 	 * @throws RateLimitExceededException if rate limit is exceeded
 	 */
-	public void checkRateLimit(String key, int maxAttempts, int timeWindowSeconds) {
-		// Record the attempt and get current count
-		int attempts = storage.recordAttempt(key, timeWindowSeconds);
+	public void checkRateLimit(LimitSpec spec) {
+		checkRateLimits(List.of(spec));
+	}
+
+	/**
+	 * Check several rate limits at once, recording an attempt for each in a single storage call
+	 *
+	 * @param specs The limits that apply to the request
+	 * @throws RateLimitExceededException if any rate limit is exceeded, with the longest retry-after among them
+	 */
+	public void checkRateLimits(List<LimitSpec> specs) {
+		if (specs.isEmpty()) {
+			return;
+		}
+
+		// Record the attempts and get current counts (and retry-after when over the limit)
+		List<AttemptResult> results = storage.recordAttempts(specs);
+
+		long retryAfterSeconds = -1;
+		for (int i = 0; i < specs.size(); i++) {
+			LimitSpec spec = specs.get(i);
+			AttemptResult result = results.get(i);
+			EndpointCounters counters = countersFor(spec.key());
 
-		// Check if limit is exceeded
-		if (attempts > maxAttempts) {
-			long remainingSeconds = getRemainingSeconds(key, timeWindowSeconds);
+			// Check if limit is exceeded
+			if (result.attempts() > spec.maxAttempts()) {
+				retryAfterSeconds = Math.max(retryAfterSeconds, result.retryAfterSeconds());
+				counters.rejected().increment();
+				heavyHitters.offer(spec.key());
+			} else {
+				counters.allowed().increment();
+			}
+
+			log.debug("Rate limit check for key '{}': {} attempts allowed, current count: {}",
+					spec.key(), spec.maxAttempts(), result.attempts());
+		}
+
+		if (retryAfterSeconds >= 0) {
 			throw new RateLimitExceededException(
-					String.format("Rate limit exceeded. Too many requests. Please try again in %d seconds.", remainingSeconds)
+					String.format("Rate limit exceeded. Too many requests. Please try again in %d seconds.", retryAfterSeconds)
 			);
 		}
+	}
 
-		log.debug("Rate limit check for key '{}': {} attempts allowed, current count: {}",
-				key, maxAttempts, attempts);
+	/**
+	 * Snapshot of the rate limiting state, for tuning @RateLimit values
+	 *
+	 * @param top Maximum number of throttled keys to include
+	 */
+	public RateLimitStatsResponse getStats(int top) {
+		Timer timer = storage.getRecordBatchTimer();
+
+		List<RateLimitStatsResponse.EndpointStats> endpoints = endpointCounters.entrySet().stream()
+				.map(entry -> new RateLimitStatsResponse.EndpointStats(
+						entry.getKey(),
+						(long) entry.getValue().allowed().count(),
+						(long) entry.getValue().rejected().count()))
+				.sorted(Comparator.comparing(RateLimitStatsResponse.EndpointStats::getRejected).reversed())
+				.toList();
+
+		return RateLimitStatsResponse.builder()
+				.storage(MeteredRateLimitStorage.storageName(storage.getDelegate()))
+				.circuitState(storage.getDelegate() instanceof ResilientRateLimitStorage resilient ? resilient.getState().name() : null)
+				.liveKeys(storage.getKeyCount())
+				.checks(timer.count())
+				.meanCheckMillis(timer.mean(TimeUnit.MILLISECONDS))
+				.maxCheckMillis(timer.max(TimeUnit.MILLISECONDS))
+				.endpoints(endpoints)
+				.topThrottledKeys(heavyHitters.top(top))
+				.build();
 	}
 
 	/**
-	 * Get remaining seconds for a rate limit key
-	 * Supports both in-memory and Redis storage implementations
+	 * Forget the throttled keys seen so far, e.g. after changing limits
 	 */
-	private long getRemainingSeconds(String key, int timeWindowSeconds) {
-		if (storage instanceof InMemoryRateLimitStorage) {
-			return ((InMemoryRateLimitStorage) storage).getRemainingSeconds(key);
-		} else if (storage instanceof RedisRateLimitStorage) {
-			return ((RedisRateLimitStorage) storage).getRemainingSeconds(key, timeWindowSeconds);
-		}
-		// Default fallback
-		return timeWindowSeconds;
+	public void resetHeavyHitters() {
+		heavyHitters.reset();
+	}
+
+	private EndpointCounters countersFor(String key) {
+		return endpointCounters.computeIfAbsent(endpointOf(key), endpoint -> new EndpointCounters(
+				checkCounter(endpoint, "allowed"),
+				checkCounter(endpoint, "rejected")));
 	}
+
+	private Counter checkCounter(String endpoint, String outcome) {
+		return Counter.builder("rate_limit.checks")
+				.description("Rate limit checks per endpoint and outcome")
+				.tag("endpoint", endpoint)
+				.tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Endpoint part of a key built by the registry ("Controller.method:KEYTYPE:value"),
+	 * so the meter cardinality follows the number of endpoints, not of clients
+	 */
+	private static String endpointOf(String key) {
+		int first = key.indexOf(':');
+		int second = first < 0 ? -1 : key.indexOf(':', first + 1);
+		return second < 0 ? "unknown" : key.substring(0, second);
+	}
+
+	private record EndpointCounters(Counter allowed, Counter rejected) {}
 }
@@ -4,66 +4,137 @@ import kaiquebt.dev.instrutorbrasil.exception.TokenExpiredException;
 import kaiquebt.dev.instrutorbrasil.exception.TokenNotFoundException;
 import kaiquebt.dev.instrutorbrasil.model.RefreshToken;
 import kaiquebt.dev.instrutorbrasil.model.User;
-import kaiquebt.dev.instrutorbrasil.repository.RefreshTokenRepository;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
+import kaiquebt.dev.instrutorbrasil.security.CustomUserDetailsService;
+import kaiquebt.dev.instrutorbrasil.security.OpaqueTokens;
+import kaiquebt.dev.instrutorbrasil.security.jwt.AccessTokenRevocationService;
+import kaiquebt.dev.instrutorbrasil.service.token.RefreshTokenStore;
+import kaiquebt.dev.instrutorbrasil.service.token.StoredRefreshToken;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class RefreshTokenService {
 
 	@Value("${jwt.refresh-token-expiration}")
 	private Long refreshTokenExpiration;
 
-	private final RefreshTokenRepository refreshTokenRepository;
+	@Value("${app.refresh-token.reuse-grace-ms:10000}")
+	private long reuseGraceMillis;
+
+	@Value("${app.refresh-token.reuse-detection-ms:86400000}")
+	private long reuseDetectionMillis;
+
+	private final RefreshTokenStore refreshTokenStore;
+	private final CustomUserDetailsService userDetailsService;
+	private final AccessTokenRevocationService accessTokenRevocationService;
 
 	public RefreshToken createRefreshToken(User user) {
+		Instant now = Instant.now();
+		String rawToken = OpaqueTokens.generate();
 		RefreshToken refreshToken = RefreshToken.builder()
 				.user(user)
-				.token(UUID.randomUUID().toString())
-				.expiryDate(Instant.now().plusMillis(refreshTokenExpiration))
+				.token(rawToken)
+				.tokenHash(OpaqueTokens.hash(rawToken))
+				.expiryDate(now.plusMillis(refreshTokenExpiration))
 				.revoked(false)
+				.createdAt(now)
 				.build();
 
-		return refreshTokenRepository.save(refreshToken);
+		refreshTokenStore.save(user.getId(), user.getEmail(), refreshToken.getTokenHash(), refreshToken.getExpiryDate());
+		return refreshToken;
 	}
 
-	public RefreshToken findByToken(String token) {
-		return refreshTokenRepository.findByToken(token)
-				.orElseThrow(() -> new TokenNotFoundException("Refresh token not found"));
+	/**
+	 * Exchange a refresh token for a new one
+	 * The happy path is a single store call that revokes the presented token and stores its replacement,
+	 * the token is only looked up again when that call matched nothing, to report why
+	 * Presenting a token again within reuse-grace-ms of its rotation is a concurrent refresh (two tabs, a retry
+	 * after a timeout) and gets one token of its own, recorded on the rotated token. Any further presentation,
+	 * or one after the grace window until reuse-detection-ms, means the token leaked: every session of the user
+	 * is ended, the grace sibling and whatever it was rotated into included
+	 *
+	 * @param token The presented refresh token
+	 * @return The new refresh token, with a snapshot of its user
+	 */
+	public RotatedToken rotate(String token) {
+		Instant now = Instant.now();
+		String newToken = OpaqueTokens.generate();
+		byte[] newTokenHash = OpaqueTokens.hash(newToken);
+		Instant expiryDate = now.plusMillis(refreshTokenExpiration);
+
+		byte[] tokenHash = OpaqueTokens.hash(token);
+		String email = refreshTokenStore.rotate(tokenHash, newTokenHash, expiryDate, now,
+				now.plusMillis(reuseDetectionMillis)).orElse(null);
+		if (email == null) {
+			StoredRefreshToken presented = refreshTokenStore.find(tokenHash)
+					.orElseThrow(() -> new TokenNotFoundException("Refresh token not found"));
+			if (isConcurrentRefresh(presented, now)) {
+				email = refreshTokenStore.issueGraceToken(tokenHash, newTokenHash, expiryDate, now,
+						now.minusMillis(reuseGraceMillis)).orElse(null);
+			}
+			if (email == null) {
+				throw rotationFailure(presented, tokenHash, now);
+			}
+
+			log.debug("Refresh token of user {} presented again right after its rotation, issued its grace token", presented.userId());
+		}
+
+		return new RotatedToken(newToken, userDetailsService.loadPrincipal(email));
 	}
 
-	public RefreshToken verifyExpiration(RefreshToken token) {
-		if (token.getExpiryDate().compareTo(Instant.now()) < 0) {
-			refreshTokenRepository.delete(token);
-			throw new TokenExpiredException("Refresh token has expired. Please login again");
+	private boolean isConcurrentRefresh(StoredRefreshToken refreshToken, Instant now) {
+		return refreshToken.revoked()
+				&& refreshToken.revokedAt() != null
+				&& now.isBefore(refreshToken.revokedAt().plusMillis(reuseGraceMillis))
+				&& !isExpired(refreshToken, now);
+	}
+
+	/**
+	 * Revoked tokens expire once the reuse detection window is over, even when the store kept their expiry date
+	 */
+	private boolean isExpired(StoredRefreshToken refreshToken, Instant now) {
+		return refreshToken.isExpired(now)
+				|| (refreshToken.revokedAt() != null && !now.isBefore(refreshToken.revokedAt().plusMillis(reuseDetectionMillis)));
+	}
+
+	private RuntimeException rotationFailure(StoredRefreshToken refreshToken, byte[] tokenHash, Instant now) {
+		if (isExpired(refreshToken, now)) {
+			refreshTokenStore.delete(tokenHash);
+			return new TokenExpiredException("Refresh token has expired. Please login again");
 		}
-		if (token.getRevoked()) {
-			throw new TokenExpiredException("Refresh token has been revoked. Please login again");
+
+		if (refreshToken.revoked()) {
+			log.warn("Refresh token reuse detected for user {}, revoking all sessions", refreshToken.userId());
+			refreshTokenStore.deleteByUser(refreshToken.userId());
+			accessTokenRevocationService.revokeUser(refreshToken.userId());
+			return new TokenExpiredException("Refresh token has been revoked. Please login again");
 		}
-		return token;
+
+		// Changed by a concurrent request between the two calls
+		return new TokenExpiredException("Refresh token has been revoked. Please login again");
 	}
 
-	@Transactional
 	public void deleteByUser(User user) {
-		refreshTokenRepository.deleteByUser(user);
+		refreshTokenStore.deleteByUser(user.getId());
 	}
 
-	@Transactional
 	public void deleteByToken(String token) {
-		RefreshToken refreshToken = findByToken(token);
-		refreshTokenRepository.delete(refreshToken);
+		refreshTokenStore.delete(OpaqueTokens.hash(token));
 	}
 
-	@Transactional
 	public void revokeToken(String token) {
-		RefreshToken refreshToken = findByToken(token);
-		refreshToken.setRevoked(true);
-		refreshTokenRepository.save(refreshToken);
+		refreshTokenStore.revoke(OpaqueTokens.hash(token));
 	}
+
+	/**
+	 * Raw refresh token that replaced the presented one, with its user
+	 */
+	public record RotatedToken(String token, AuthenticatedUser user) {}
 }
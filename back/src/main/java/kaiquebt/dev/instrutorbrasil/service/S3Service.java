@@ -1,7 +1,9 @@
 package kaiquebt.dev.instrutorbrasil.service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import kaiquebt.dev.instrutorbrasil.config.AwsProperties;
-import lombok.RequiredArgsConstructor;
+import kaiquebt.dev.instrutorbrasil.exception.ServiceBusyException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
@@ -24,9 +26,11 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class S3Service {
 
@@ -34,10 +38,33 @@ public class S3Service {
 	private final S3Presigner s3Presigner;
 	private final AwsProperties awsProperties;
 	private final DefaultCredentialsProvider credentialsProvider;
+	// Bulkhead for the blocking S3 calls, so a slow S3 can't tie up every request thread waiting on the client's pool
+	private final Semaphore s3Permits;
 
 	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
 	private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
 
+	public S3Service(
+			S3Client s3Client,
+			S3Presigner s3Presigner,
+			AwsProperties awsProperties,
+			DefaultCredentialsProvider credentialsProvider,
+			MeterRegistry meterRegistry) {
+		this.s3Client = s3Client;
+		this.s3Presigner = s3Presigner;
+		this.awsProperties = awsProperties;
+		this.credentialsProvider = credentialsProvider;
+		int maxConcurrency = awsProperties.getS3().getMaxConcurrency();
+		this.s3Permits = new Semaphore(maxConcurrency);
+
+		Gauge.builder("s3.calls.active", s3Permits, permits -> maxConcurrency - permits.availablePermits())
+				.description("S3 calls in flight, out of max-concurrency")
+				.register(meterRegistry);
+		Gauge.builder("s3.calls.waiting", s3Permits, Semaphore::getQueueLength)
+				.description("Requests waiting for a free S3 slot")
+				.register(meterRegistry);
+	}
+
 	/**
 	 * Generates a presigned POST for uploading a file to S3 with enforced size limit
 	 * The size limit is enforced by S3 BEFORE accepting the upload
@@ -168,6 +195,7 @@ public class S3Service {
 	 * @param s3Key S3 object key
 	 * @return S3FileMetadata containing file size and MIME type
 	 * @throws IllegalArgumentException if file doesn't exist in S3
+	 * @throws ServiceBusyException if every S3 slot stays busy for acquire-timeout-ms
 	 */
 	public S3FileMetadata getFileMetadata(String s3Key) {
 		try {
@@ -176,7 +204,7 @@ public class S3Service {
 					.key(s3Key)
 					.build();
 
-			HeadObjectResponse headObjectResponse = s3Client.headObject(headObjectRequest);
+			HeadObjectResponse headObjectResponse = withPermit(() -> s3Client.headObject(headObjectRequest));
 
 			Long fileSize = headObjectResponse.contentLength();
 			String mimeType = headObjectResponse.contentType();
@@ -188,12 +216,37 @@ public class S3Service {
 		} catch (NoSuchKeyException e) {
 			log.error("File not found in S3: {}", s3Key);
 			throw new IllegalArgumentException("File not found in S3: " + s3Key);
+		} catch (ServiceBusyException e) {
+			throw e;
 		} catch (Exception e) {
 			log.error("Error retrieving metadata for key: {}", s3Key, e);
 			throw new RuntimeException("Failed to retrieve file metadata from S3", e);
 		}
 	}
 
+	/**
+	 * Run an S3 call once one of the max-concurrency slots is free
+	 *
+	 * @throws ServiceBusyException if no slot frees up within acquire-timeout-ms
+	 */
+	private <T> T withPermit(Supplier<T> call) {
+		try {
+			if (!s3Permits.tryAcquire(awsProperties.getS3().getAcquireTimeoutMs(), TimeUnit.MILLISECONDS)) {
+				log.warn("All {} S3 slots busy, rejecting call", awsProperties.getS3().getMaxConcurrency());
+				throw new ServiceBusyException("File storage is busy, please try again");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceBusyException("Interrupted while waiting for file storage");
+		}
+
+		try {
+			return call.get();
+		} finally {
+			s3Permits.release();
+		}
+	}
+
 	/**
 	 * Record class to hold S3 file metadata
 	 */
@@ -1,36 +1,191 @@
 package kaiquebt.dev.instrutorbrasil.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import kaiquebt.dev.instrutorbrasil.repository.EmailOutboxRepository;
 import kaiquebt.dev.instrutorbrasil.repository.EmailVerificationTokenRepository;
 import kaiquebt.dev.instrutorbrasil.repository.PasswordResetTokenRepository;
-import kaiquebt.dev.instrutorbrasil.repository.RefreshTokenRepository;
+import kaiquebt.dev.instrutorbrasil.service.token.RefreshTokenStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntUnaryOperator;
 
+/**
+ * Purges expired tokens continuously in small chunks instead of one large nightly delete
+ * Each chunk is its own short transaction, followed by a pause, so locks and WAL are spread out over time
+ * Runs on its own low-priority thread, the pauses would otherwise hold up the shared scheduler thread
+ *
+ * Every chunk first takes a transaction-scoped Postgres advisory lock shared by all nodes.
+ * A node that can't get it stops its run and leaves the work to the node holding it
+ *
+ * With app.token-cleanup.mode PARTITIONED, tables set up as partitioned drop whole expired partitions instead
+ *
+ * FAILED email_outbox rows are purged the same way once older than app.email.outbox.failed-retention-ms
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TokenCleanupService {
 
-	private final RefreshTokenRepository refreshTokenRepository;
+	// Advisory lock key shared by every node running the cleanup or the partition manager
+	static final long LEASE_KEY = 0x746f6b656e636cL;
+
+	private final RefreshTokenStore refreshTokenStore;
 	private final PasswordResetTokenRepository passwordResetTokenRepository;
 	private final EmailVerificationTokenRepository emailVerificationTokenRepository;
+	private final EmailOutboxRepository emailOutboxRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final EntityManager entityManager;
+	private final MeterRegistry meterRegistry;
+	private final Optional<TokenPartitionManager> partitionManager;
+
+	@Value("${app.token-cleanup.batch-size:1000}")
+	private int batchSize;
+
+	@Value("${app.token-cleanup.pause-ms:200}")
+	private long pauseMillis;
+
+	@Value("${app.email.outbox.failed-retention-ms:604800000}")
+	private long failedEmailRetentionMillis;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "token-cleanup");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	@Scheduled(fixedDelayString = "${app.token-cleanup.interval-ms:300000}", initialDelayString = "${app.token-cleanup.interval-ms:300000}")
+	public void scheduleCleanup() {
+		if (!running.compareAndSet(false, true)) {
+			return;
+		}
+		executor.execute(() -> {
+			try {
+				cleanupExpiredTokens();
+			} catch (RuntimeException e) {
+				log.warn("Expired token cleanup failed: {}", e.getMessage());
+			} finally {
+				running.set(false);
+			}
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
 
-	@Scheduled(cron = "0 0 2 * * ?")
-	@Transactional
 	public void cleanupExpiredTokens() {
 		Instant now = Instant.now();
 
-		log.info("Starting cleanup of expired tokens");
+		long refreshTokens = purge("refresh_tokens", limit -> refreshTokenStore.deleteExpired(now, limit));
+		if (refreshTokens < 0) {
+			return;
+		}
+		long passwordResetTokens = purge("password_reset_tokens",
+				limit -> passwordResetTokenRepository.deleteExpiredBatch(now, limit));
+		if (passwordResetTokens < 0) {
+			return;
+		}
+		long emailVerificationTokens = purge("email_verification_tokens",
+				limit -> emailVerificationTokenRepository.deleteExpiredBatch(now, limit));
+		if (emailVerificationTokens < 0) {
+			return;
+		}
+		long failedEmails = purge("email_outbox",
+				limit -> emailOutboxRepository.deleteFailedBatch(now.minusMillis(failedEmailRetentionMillis), limit));
+		if (failedEmails < 0) {
+			return;
+		}
 
-		refreshTokenRepository.deleteByExpiryDateBefore(now);
-		passwordResetTokenRepository.deleteByExpiryDateBefore(now);
-		emailVerificationTokenRepository.deleteByExpiryDateBefore(now);
+		if (refreshTokens + passwordResetTokens + emailVerificationTokens + failedEmails > 0) {
+			log.info("Deleted expired tokens: {} refresh, {} password reset, {} email verification, and {} failed emails",
+					refreshTokens, passwordResetTokens, emailVerificationTokens, failedEmails);
+		}
+	}
+
+	/**
+	 * Delete chunks from one table until a chunk comes back short
+	 *
+	 * @return Number of rows deleted, -1 if another node holds the lease or the thread was interrupted
+	 */
+	private long purge(String table, IntUnaryOperator deleteChunk) {
+		if (partitionManager.isPresent() && partitionManager.get().isPartitioned(table)) {
+			return dropPartitions(table, partitionManager.get());
+		}
+
+		Counter counter = Counter.builder("token_cleanup.deleted")
+				.description("Expired rows deleted by the cleanup")
+				.tag("table", table)
+				.register(meterRegistry);
+		long deleted = 0;
+
+		while (true) {
+			Integer chunk = transactionTemplate.execute(status -> tryLease() ? deleteChunk.applyAsInt(batchSize) : null);
+			if (chunk == null) {
+				log.debug("Token cleanup is running on another node, skipping this run");
+				return -1;
+			}
+
+			deleted += chunk;
+			counter.increment(chunk);
+			if (chunk < batchSize) {
+				return deleted;
+			}
+
+			try {
+				Thread.sleep(pauseMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Drop the expired partitions of a table, rows in them are not counted
+	 * The manager holds the lease itself, detaching concurrently can't run in a transaction
+	 *
+	 * @return 0, or -1 if another node holds the lease
+	 */
+	private long dropPartitions(String table, TokenPartitionManager manager) {
+		int dropped = manager.dropExpiredPartitions(table, Instant.now());
+		if (dropped < 0) {
+			log.debug("Token cleanup is running on another node, skipping this run");
+			return -1;
+		}
+
+		if (dropped > 0) {
+			Counter.builder("token_cleanup.partitions_dropped")
+					.description("Expired token partitions dropped by the cleanup")
+					.tag("table", table)
+					.register(meterRegistry)
+					.increment(dropped);
+			log.info("Dropped {} expired partitions of {}", dropped, table);
+		}
+		return 0;
+	}
 
-		log.info("Completed cleanup of expired tokens");
+	/**
+	 * Released when the chunk's transaction ends, so a node that dies mid-run never blocks the others
+	 */
+	private boolean tryLease() {
+		return (Boolean) entityManager.createNativeQuery("SELECT pg_try_advisory_xact_lock(:key)")
+				.setParameter("key", LEASE_KEY)
+				.getSingleResult();
 	}
 }
@@ -0,0 +1,76 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Moves the token tables from the raw token column to the token_hash digest, see OpaqueTokens
+ * ddl-auto adds token_hash as a nullable column, this backfills it with the SHA-256 of the old token
+ * (the same digest OpaqueTokens.hash computes, so tokens already issued keep working), drops the old column
+ * and only then makes token_hash NOT NULL
+ * Runs on startup before the web server accepts requests, one node at a time (Postgres advisory lock),
+ * and does nothing once every table is migrated
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenHashMigration {
+
+	// "tokenhm"
+	private static final long LOCK_KEY = 0x746f6b656e686dL;
+	private static final List<String> TABLES = List.of("refresh_tokens", "password_reset_tokens", "email_verification_tokens");
+
+	private final EntityManager entityManager;
+	private final TransactionTemplate transactionTemplate;
+
+	@PostConstruct
+	public void migrate() {
+		for (String table : TABLES) {
+			transactionTemplate.executeWithoutResult(status -> {
+				entityManager.createNativeQuery("SELECT pg_advisory_xact_lock(:key)")
+						.setParameter("key", LOCK_KEY)
+						.getSingleResult();
+				migrate(table);
+			});
+		}
+	}
+
+	private void migrate(String table) {
+		if (hasColumn(table, "token")) {
+			int backfilled = entityManager.createNativeQuery("UPDATE " + table
+							+ " SET token_hash = sha256(convert_to(token, 'UTF8')) WHERE token_hash IS NULL")
+					.executeUpdate();
+			entityManager.createNativeQuery("ALTER TABLE " + table + " DROP COLUMN token").executeUpdate();
+			log.info("Backfilled token_hash of {} rows in {} and dropped the raw token column", backfilled, table);
+		}
+
+		if (isNullable(table, "token_hash")) {
+			entityManager.createNativeQuery("ALTER TABLE " + table + " ALTER COLUMN token_hash SET NOT NULL").executeUpdate();
+		}
+	}
+
+	private boolean hasColumn(String table, String column) {
+		return !columnNullability(table, column).isEmpty();
+	}
+
+	private boolean isNullable(String table, String column) {
+		return columnNullability(table, column).contains("YES");
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> columnNullability(String table, String column) {
+		return entityManager.createNativeQuery("""
+						SELECT is_nullable::text FROM information_schema.columns
+						WHERE table_schema = current_schema() AND table_name = :table AND column_name = :column
+						""")
+				.setParameter("table", table)
+				.setParameter("column", column)
+				.getResultList();
+	}
+}
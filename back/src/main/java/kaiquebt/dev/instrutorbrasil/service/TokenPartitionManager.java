@@ -0,0 +1,232 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the token tables created by db/partitioned-tokens.sql, range-partitioned by expiry date
+ * Partitions cover partition-days each, are created ahead up to the longest lifetime of their tokens,
+ * and are detached (concurrently, without blocking the table) and dropped as a whole once every token in them
+ * has expired, so token churn never leaves dead rows behind for vacuum
+ * Tables that are not partitioned are left alone, TokenCleanupService keeps deleting their rows in chunks
+ */
+@Service
+@ConditionalOnProperty(name = "app.token-cleanup.mode", havingValue = "PARTITIONED")
+@Slf4j
+public class TokenPartitionManager {
+
+	private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+	// "tokenpc", serializes partition creation across nodes, separate from the cleanup lease so it is never skipped
+	private static final long CREATE_LOCK_KEY = 0x746f6b656e7063L;
+
+	private final EntityManager entityManager;
+	private final TransactionTemplate transactionTemplate;
+	private final JdbcTemplate jdbcTemplate;
+	private final int partitionDays;
+	// table -> longest lifetime of its tokens in milliseconds
+	private final Map<String, Long> lifetimes;
+
+	public TokenPartitionManager(
+			EntityManager entityManager,
+			TransactionTemplate transactionTemplate,
+			JdbcTemplate jdbcTemplate,
+			@Value("${app.token-cleanup.partition-days:1}") int partitionDays,
+			@Value("${jwt.refresh-token-expiration}") long refreshTokenExpiration,
+			@Value("${app.token.password-reset-expiration:3600000}") long passwordResetTokenExpiration,
+			@Value("${app.token.email-verification-expiration:86400000}") long emailVerificationTokenExpiration) {
+		this.entityManager = entityManager;
+		this.transactionTemplate = transactionTemplate;
+		this.jdbcTemplate = jdbcTemplate;
+		this.partitionDays = Math.max(1, partitionDays);
+		this.lifetimes = Map.of(
+				"refresh_tokens", refreshTokenExpiration,
+				"password_reset_tokens", passwordResetTokenExpiration,
+				"email_verification_tokens", emailVerificationTokenExpiration);
+	}
+
+	/**
+	 * Make sure every partitioned table has partitions for any expiry date a token issued now can get
+	 * There is no DEFAULT partition, so a token expiring past the last partition can't be stored
+	 * Runs on startup, before the web server accepts requests so a raised token lifetime is covered first,
+	 * and every hour. Nodes wait for each other instead of skipping, the cleanup lease doesn't block it
+	 */
+	@PostConstruct
+	@Scheduled(cron = "0 0 * * * *")
+	public void createPartitions() {
+		Instant now = Instant.now();
+
+		for (Map.Entry<String, Long> table : lifetimes.entrySet()) {
+			Instant until = now.plusMillis(table.getValue());
+			try {
+				Integer created = transactionTemplate.execute(status -> {
+					entityManager.createNativeQuery("SELECT pg_advisory_xact_lock(:key)")
+							.setParameter("key", CREATE_LOCK_KEY)
+							.getSingleResult();
+					if (!isPartitioned(table.getKey())) {
+						return 0;
+					}
+					return createPartitions(table.getKey(), now, until);
+				});
+				if (created != null && created > 0) {
+					log.info("Created {} partitions of {}", created, table.getKey());
+				}
+			} catch (RuntimeException e) {
+				log.error("Failed to create partitions of {}, tokens expiring up to {} may fail to be stored: {}",
+						table.getKey(), until, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Whether the table was set up as a partitioned table
+	 */
+	public boolean isPartitioned(String table) {
+		return ((Number) entityManager.createNativeQuery("""
+						SELECT count(*) FROM pg_partitioned_table pt
+						JOIN pg_class c ON c.oid = pt.partrelid
+						WHERE c.relname = :table AND c.relnamespace = current_schema()::regnamespace
+						""")
+				.setParameter("table", table)
+				.getSingleResult()).longValue() > 0;
+	}
+
+	/**
+	 * Detach and drop the partitions of a table whose whole range is expired
+	 * DETACH PARTITION ... CONCURRENTLY only takes a SHARE UPDATE EXCLUSIVE lock on the parent, so logins and
+	 * refreshes keep going while it waits for the queries using the partition, but it can't run in a transaction:
+	 * this uses its own autocommit connection and holds the cleanup lease at session level meanwhile
+	 * A detach interrupted half-way (node killed) leaves the partition pending, it is finalized on the next run
+	 *
+	 * @return Number of partitions dropped, -1 if another node holds the lease
+	 */
+	public int dropExpiredPartitions(String table, Instant now) {
+		LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+
+		Integer dropped = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+			connection.setAutoCommit(true);
+			try (Statement statement = connection.createStatement()) {
+				if (!advisoryLock(statement, "pg_try_advisory_lock")) {
+					return -1;
+				}
+				try {
+					int count = 0;
+					for (Map.Entry<String, Boolean> partition : partitionsOf(connection, table).entrySet()) {
+						LocalDate start = partitionStart(table, partition.getKey());
+						if (start == null || start.plusDays(partitionDays).isAfter(today)) {
+							continue;
+						}
+						String mode = partition.getValue() ? " FINALIZE" : " CONCURRENTLY";
+						statement.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition.getKey() + mode);
+						statement.execute("DROP TABLE " + partition.getKey());
+						count++;
+					}
+					return count;
+				} finally {
+					advisoryLock(statement, "pg_advisory_unlock");
+				}
+			}
+		});
+		return dropped != null ? dropped : 0;
+	}
+
+	private int createPartitions(String table, Instant from, Instant to) {
+		LocalDate last = alignedStart(LocalDate.ofInstant(to, ZoneOffset.UTC));
+		List<String> existing = partitionsOf(table);
+		int created = 0;
+
+		// One partition past the longest lifetime, so tokens issued until the next run still have one
+		for (LocalDate start = alignedStart(LocalDate.ofInstant(from, ZoneOffset.UTC));
+				!start.isAfter(last.plusDays(partitionDays));
+				start = start.plusDays(partitionDays)) {
+			String partition = table + "_p" + start.format(SUFFIX);
+			if (existing.contains(partition)) {
+				continue;
+			}
+			entityManager.createNativeQuery("CREATE TABLE " + partition + " PARTITION OF " + table
+					+ " FOR VALUES FROM ('" + start + " 00:00:00+00') TO ('" + start.plusDays(partitionDays) + " 00:00:00+00')")
+					.executeUpdate();
+			created++;
+		}
+		return created;
+	}
+
+	/**
+	 * Partitions of a table, with whether a concurrent detach of it is pending
+	 */
+	private static Map<String, Boolean> partitionsOf(Connection connection, String table) throws SQLException {
+		Map<String, Boolean> partitions = new LinkedHashMap<>();
+		try (PreparedStatement statement = connection.prepareStatement("""
+				SELECT c.relname::text, i.inhdetachpending FROM pg_inherits i
+				JOIN pg_class c ON c.oid = i.inhrelid
+				JOIN pg_class p ON p.oid = i.inhparent
+				WHERE p.relname = ? AND p.relnamespace = current_schema()::regnamespace
+				""")) {
+			statement.setString(1, table);
+			try (ResultSet rows = statement.executeQuery()) {
+				while (rows.next()) {
+					partitions.put(rows.getString(1), rows.getBoolean(2));
+				}
+			}
+		}
+		return partitions;
+	}
+
+	private static boolean advisoryLock(Statement statement, String function) throws SQLException {
+		try (ResultSet result = statement.executeQuery("SELECT " + function + "(" + TokenCleanupService.LEASE_KEY + ")")) {
+			return result.next() && result.getBoolean(1);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> partitionsOf(String table) {
+		return entityManager.createNativeQuery("""
+						SELECT c.relname::text FROM pg_inherits i
+						JOIN pg_class c ON c.oid = i.inhrelid
+						JOIN pg_class p ON p.oid = i.inhparent
+						WHERE p.relname = :table AND p.relnamespace = current_schema()::regnamespace
+						""")
+				.setParameter("table", table)
+				.getResultList();
+	}
+
+	/**
+	 * Start of the partition's range, from its name, null for partitions this class didn't create
+	 */
+	private static LocalDate partitionStart(String table, String partition) {
+		String prefix = table + "_p";
+		if (!partition.startsWith(prefix) || partition.length() != prefix.length() + 8) {
+			return null;
+		}
+		try {
+			return LocalDate.parse(partition.substring(prefix.length()), SUFFIX);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	// Ranges are aligned on multiples of partition-days since the epoch, so every node computes the same ones
+	private LocalDate alignedStart(LocalDate date) {
+		return LocalDate.ofEpochDay(Math.floorDiv(date.toEpochDay(), partitionDays) * partitionDays);
+	}
+}
@@ -5,6 +5,8 @@ import kaiquebt.dev.instrutorbrasil.model.User;
 import kaiquebt.dev.instrutorbrasil.model.enums.AuthProvider;
 import kaiquebt.dev.instrutorbrasil.model.enums.Role;
 import kaiquebt.dev.instrutorbrasil.repository.UserRepository;
+import kaiquebt.dev.instrutorbrasil.security.CustomUserDetailsService;
+import kaiquebt.dev.instrutorbrasil.security.jwt.AccessTokenRevocationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
@@ -18,6 +20,9 @@ import java.util.Set;
 public class UserService {
 
 	private final UserRepository userRepository;
+	private final CustomUserDetailsService userDetailsService;
+	private final RefreshTokenService refreshTokenService;
+	private final AccessTokenRevocationService accessTokenRevocationService;
 
 	public User findByEmail(String email) {
 		return userRepository.findByEmail(email)
@@ -38,7 +43,30 @@ public class UserService {
 	}
 
 	public User updateUser(User user) {
-		return userRepository.save(user);
+		User saved = userRepository.save(user);
+		userDetailsService.evict(saved.getEmail());
+		return saved;
+	}
+
+	/**
+	 * Enable or disable an account
+	 * Disabling also signs the user out everywhere: refresh tokens are deleted and issued access tokens revoked
+	 *
+	 * @param id The user id
+	 * @param enabled The new state
+	 * @return The updated user
+	 */
+	@Transactional
+	public User setEnabled(Long id, boolean enabled) {
+		User user = findById(id);
+		user.setEnabled(enabled);
+		User saved = updateUser(user);
+
+		if (!enabled) {
+			refreshTokenService.deleteByUser(saved);
+			accessTokenRevocationService.revokeUser(saved.getId());
+		}
+		return saved;
 	}
 
 	public Boolean existsByEmail(String email) {
@@ -57,7 +85,9 @@ public class UserService {
 			User existingUser = userOptional.get();
 			existingUser.setName(name);
 			existingUser.setEmailVerified(true);
-			return userRepository.save(existingUser);
+			User saved = userRepository.save(existingUser);
+			userDetailsService.evict(saved.getEmail());
+			return saved;
 		} else {
 			User newUser = User.builder()
 					.email(email)
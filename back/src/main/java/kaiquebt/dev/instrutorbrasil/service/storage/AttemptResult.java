@@ -0,0 +1,9 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+/**
+ * Outcome of recording a rate limit attempt
+ *
+ * @param attempts Number of attempts in the current window, including this one
+ * @param retryAfterSeconds Seconds until a new attempt is allowed, 0 when under the limit
+ */
+public record AttemptResult(int attempts, long retryAfterSeconds) {}
@@ -0,0 +1,277 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-memory, lock-free implementation of rate limit storage
+ * Keys are stored as 64-bit hashes in an open-addressed table of primitive arrays,
+ * and each slot holds the packed sliding window counter or GCRA state (see RateLimitAlgorithms) in one long
+ * Memory is allocated once (20 bytes per slot) and never grows
+ *
+ * Window semantics differ from MEMORY:
+ * - EXACT_LOG limits are counted as SLIDING_WINDOW_COUNTER, only one long fits in a slot
+ * - Sliding window counters count attempts in fixed windows aligned on multiples of the window since the epoch,
+ *   and estimate the sliding count by weighting the previous window by how much of it still overlaps.
+ *   Each fixed window counts up to 65535 attempts per key
+ * - A key's slot is kept until its state has expired (end of the following window, or the GCRA arrival time)
+ *
+ * When a new key's probe range holds no free or expired slot, the live key closest to expiring is evicted
+ * (approximate LRU, a key's expiry moves forward on every attempt) and the eviction is counted
+ * New keys are never refused: IP keys come from X-Forwarded-For, so refusing them would let one client fill
+ * the table with made-up keys and lock every new caller out. Size max-keys above the keys live at once
+ * Suitable for single-instance deployments that need bounded memory under bot traffic
+ */
+@Slf4j
+public class CompactRateLimitStorage implements RateLimitStorage {
+
+	private static final int MAX_PROBES = 8;
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private static final long EMPTY = 0L;
+	// Slot state while its key is being replaced, no real window or arrival time packs to it
+	private static final long LOCKED = -1L;
+
+	private final int mask;
+	private final AtomicLongArray keys;
+	private final AtomicLongArray states;
+	// When each slot's state stops mattering, in seconds since epochSecond, written before the state it covers
+	private final AtomicIntegerArray expiries;
+	private final long epochSecond = System.currentTimeMillis() / 1000;
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder occupied = new LongAdder();
+	private long reportedEvictions;
+
+	public CompactRateLimitStorage(int maxKeys) {
+		int capacity = MAX_PROBES;
+		while (capacity < maxKeys && capacity < MAX_CAPACITY) {
+			capacity <<= 1;
+		}
+
+		this.mask = capacity - 1;
+		this.keys = new AtomicLongArray(capacity);
+		this.states = new AtomicLongArray(capacity);
+		this.expiries = new AtomicIntegerArray(capacity);
+
+		log.info("Compact rate limit storage allocated {} slots (~{} KB)", capacity, (capacity * 20L) / 1024);
+	}
+
+	@Override
+	public AttemptResult recordAttempt(LimitSpec spec) {
+		LimitSpec effective = approximate(spec);
+		long hash = hash(effective);
+		long now = System.currentTimeMillis();
+		int home = (int) hash & mask;
+
+		while (true) {
+			int target = -1;
+			long targetKey = EMPTY;
+			long targetState = EMPTY;
+			int oldest = -1;
+			long oldestKey = EMPTY;
+			long oldestState = EMPTY;
+			long oldestExpiry = Long.MAX_VALUE;
+			boolean retry = false;
+
+			for (int i = 0; i < MAX_PROBES; i++) {
+				int slot = (home + i) & mask;
+				long slotKey = keys.get(slot);
+
+				if (slotKey == hash) {
+					AttemptResult result = update(slot, hash, effective, now);
+					if (result != null) {
+						return result;
+					}
+					// Slot was taken over by another key while we were updating it
+					retry = true;
+					break;
+				}
+
+				long state = states.get(slot);
+				if (state == LOCKED) {
+					// Being claimed right now, possibly for this very key, look again once it's settled
+					retry = true;
+					break;
+				}
+				if (target >= 0) {
+					continue;
+				}
+
+				long expiresAt = expiresAt(slot);
+				if (slotKey == EMPTY || expiresAt <= now) {
+					target = slot;
+					targetKey = slotKey;
+					targetState = state;
+				} else if (expiresAt < oldestExpiry) {
+					oldest = slot;
+					oldestKey = slotKey;
+					oldestState = state;
+					oldestExpiry = expiresAt;
+				}
+			}
+
+			if (retry) {
+				Thread.onSpinWait();
+				continue;
+			}
+
+			boolean evicting = target < 0;
+			if (evicting) {
+				// Every slot in range holds a live key, take the one closest to expiring
+				target = oldest;
+				targetKey = oldestKey;
+				targetState = oldestState;
+			}
+
+			long initial = RateLimitAlgorithms.next(EMPTY, effective, now);
+			if (claim(target, targetKey, targetState, hash, initial, effective)) {
+				if (targetKey == EMPTY) {
+					occupied.increment();
+				}
+				if (evicting) {
+					evictions.increment();
+				}
+				return RateLimitAlgorithms.result(EMPTY, initial, effective, now);
+			}
+		}
+	}
+
+	@Override
+	public int getAttemptCount(LimitSpec spec) {
+		LimitSpec effective = approximate(spec);
+		long state = find(hash(effective));
+		return RateLimitAlgorithms.count(state, effective, System.currentTimeMillis());
+	}
+
+	@Override
+	@Scheduled(fixedRate = 60000) // 1 minute
+	public void cleanupExpired() {
+		// Memory is preallocated and expired slots are recycled on insert, nothing to reclaim
+		long total = evictions.sum();
+		if (total > reportedEvictions) {
+			log.warn("Compact rate limit table full: {} live keys evicted since the last check, consider raising max-keys",
+					total - reportedEvictions);
+			reportedEvictions = total;
+		}
+	}
+
+	/**
+	 * Occupied slots, expired keys included until their slot is reused
+	 */
+	@Override
+	public long getKeyCount() {
+		return occupied.sum();
+	}
+
+	/**
+	 * Number of live keys evicted since startup because the table had no room for a new key
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	private long find(long hash) {
+		int home = (int) hash & mask;
+		for (int i = 0; i < MAX_PROBES; i++) {
+			int slot = (home + i) & mask;
+			if (keys.get(slot) == hash) {
+				long state = states.get(slot);
+				return state == LOCKED ? EMPTY : state;
+			}
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Apply one attempt to a slot owned by the given key
+	 *
+	 * @return The outcome of the attempt, or null if the slot no longer belongs to the key
+	 */
+	private AttemptResult update(int slot, long hash, LimitSpec spec, long now) {
+		while (true) {
+			long state = states.get(slot);
+			if (state == LOCKED) {
+				Thread.onSpinWait();
+				continue;
+			}
+			if (keys.get(slot) != hash) {
+				return null;
+			}
+
+			long next = RateLimitAlgorithms.next(state, spec, now);
+			if (next != state) {
+				// Extended before the state is published, so a claimer never sees a live state as expired
+				expiries.accumulateAndGet(slot, relativeSeconds(RateLimitAlgorithms.expiresAt(next, spec)), Math::max);
+			}
+			if (next == state || states.compareAndSet(slot, state, next)) {
+				return RateLimitAlgorithms.result(state, next, spec, now);
+			}
+		}
+	}
+
+	/**
+	 * Take over a free, expired or evicted slot for a new key
+	 * The state is locked first, and only if it is still the one seen during the probe, so concurrent increments
+	 * can't land on the previous key's counter and a key touched in the meantime is left alone
+	 */
+	private boolean claim(int slot, long expectedKey, long expectedState, long hash, long initialState, LimitSpec spec) {
+		if (!states.compareAndSet(slot, expectedState, LOCKED)) {
+			return false;
+		}
+
+		if (keys.get(slot) != expectedKey) {
+			// Someone claimed it between our probe and the lock
+			states.set(slot, expectedState);
+			return false;
+		}
+
+		keys.set(slot, hash);
+		expiries.set(slot, relativeSeconds(RateLimitAlgorithms.expiresAt(initialState, spec)));
+		states.set(slot, initialState);
+		return true;
+	}
+
+	private long expiresAt(int slot) {
+		return (epochSecond + expiries.get(slot)) * 1000;
+	}
+
+	// Rounded up, so a slot is never considered expired before its state is
+	private int relativeSeconds(long epochMillis) {
+		return (int) Math.min(Integer.MAX_VALUE, (epochMillis + 999) / 1000 - epochSecond);
+	}
+
+	/**
+	 * A slot only has room for one long, so the exact log is approximated by the sliding window counter
+	 */
+	private static LimitSpec approximate(LimitSpec spec) {
+		if (spec.algorithm() != RateLimit.Algorithm.EXACT_LOG) {
+			return spec;
+		}
+		return new LimitSpec(spec.key(), spec.maxAttempts(), spec.timeWindowSeconds(), RateLimit.Algorithm.SLIDING_WINDOW_COUNTER);
+	}
+
+	/**
+	 * 64-bit FNV-1a over the algorithm and the key's chars with a final avalanche mix
+	 * The algorithm is part of the hash so states of different algorithms never share a slot
+	 * Collisions at 64 bits are negligible for rate limiting, 0 is reserved for empty slots
+	 */
+	private static long hash(LimitSpec spec) {
+		String key = spec.key();
+		long h = 0xcbf29ce484222325L;
+		h ^= spec.algorithm().ordinal();
+		h *= 0x100000001b3L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		return h == EMPTY ? 1 : h;
+	}
+}
@@ -0,0 +1,320 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two-tier rate limit storage: local counters in front of the Redis sliding window counters
+ * SLIDING_WINDOW_COUNTER attempts are counted in process while the estimate stays well below the limit,
+ * and the local deltas are flushed to Redis in one pipeline every flush interval
+ * Once a key gets close to its limit every attempt escalates to a synchronous Redis call, so the decision
+ * near the threshold uses the global count
+ * Each node can admit at most local-ratio * maxAttempts attempts per window before it has seen the global count,
+ * which bounds how far over the limit a key can go across the cluster
+ * EXACT_LOG and GCRA need the exact shared state and always go to Redis (same as REDIS)
+ * Behind the circuit breaker, flushes are skipped while it is open and the deltas wait for the next one
+ */
+@Slf4j
+public class HybridRateLimitStorage extends RedisRateLimitStorage {
+
+	private final double localRatio;
+	private final Map<String, LocalCounter> counters = new ConcurrentHashMap<>();
+	// Counters whose window ended with deltas not yet flushed
+	private final Queue<LocalCounter> retired = new ConcurrentLinkedQueue<>();
+	private volatile FlushGuard flushGuard = call -> {
+		call.run();
+		return true;
+	};
+
+	public HybridRateLimitStorage(RedisTemplate<String, String> redisTemplate, double localRatio) {
+		super(redisTemplate);
+		this.localRatio = localRatio;
+	}
+
+	@Override
+	protected AttemptResult recordCounterAttempt(LimitSpec spec, long now) {
+		LocalCounter counter = counterFor(spec, now);
+		long elapsed = now - counter.windowStart * 1000;
+
+		counter.added.increment();
+
+		long estimate = RateLimitAlgorithms.weightedCount(counter.globalPrevious, counter.globalCurrent + counter.pending(), elapsed, spec.windowMillis());
+		if (estimate <= spec.maxAttempts() * localRatio) {
+			return new AttemptResult((int) estimate, 0);
+		}
+
+		// Close to the limit: push what we have and decide on the global count
+		// A ReentrantLock rather than synchronized, so a virtual thread waiting on Redis here doesn't pin its carrier
+		counter.lock.lock();
+		try {
+			long delta = counter.pending();
+			if (delta > 0) {
+				long[] counts = incrementCounter(spec, counter.windowStart, delta);
+				if (counts != null) {
+					counter.flushed += delta;
+					counter.refresh(counts[0], counts[1]);
+				}
+			}
+		} finally {
+			counter.lock.unlock();
+		}
+
+		return RateLimitAlgorithms.slidingWindowResult(counter.globalPrevious, counter.globalCurrent + counter.pending(), elapsed, spec);
+	}
+
+	/**
+	 * Sliding window counters are answered locally, only the remaining limits go to Redis in one pipeline
+	 */
+	@Override
+	public List<AttemptResult> recordAttempts(List<LimitSpec> specs) {
+		long now = Instant.now().toEpochMilli();
+		AttemptResult[] results = new AttemptResult[specs.size()];
+		List<LimitSpec> remote = new ArrayList<>();
+
+		for (int i = 0; i < specs.size(); i++) {
+			LimitSpec spec = specs.get(i);
+			if (spec.algorithm() == RateLimit.Algorithm.SLIDING_WINDOW_COUNTER) {
+				results[i] = recordCounterAttempt(spec, now);
+			} else {
+				remote.add(spec);
+			}
+		}
+
+		if (!remote.isEmpty()) {
+			Iterator<AttemptResult> remoteResults = super.recordAttempts(remote).iterator();
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] == null) {
+					results[i] = remoteResults.next();
+				}
+			}
+		}
+
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Keys with a local counter, the global key count lives in Redis
+	 */
+	@Override
+	public long getKeyCount() {
+		return counters.size();
+	}
+
+	@Override
+	public int getAttemptCount(LimitSpec spec) {
+		if (spec.algorithm() != RateLimit.Algorithm.SLIDING_WINDOW_COUNTER) {
+			return super.getAttemptCount(spec);
+		}
+
+		long now = Instant.now().toEpochMilli();
+		LocalCounter counter = counters.get(spec.key());
+		if (counter == null || counter.windowStart != RateLimitAlgorithms.alignedWindowStart(now, spec.timeWindowSeconds())) {
+			return super.getAttemptCount(spec);
+		}
+		return RateLimitAlgorithms.weightedCount(counter.globalPrevious, counter.globalCurrent + counter.pending(),
+				now - counter.windowStart * 1000, spec.windowMillis());
+	}
+
+	/**
+	 * Route flushes through the circuit breaker, see ResilientRateLimitStorage
+	 */
+	void setFlushGuard(FlushGuard flushGuard) {
+		this.flushGuard = flushGuard;
+	}
+
+	/**
+	 * Push the local deltas of every counter to Redis in one pipeline and refresh their global snapshots
+	 */
+	@Scheduled(fixedDelayString = "${app.rate-limit.hybrid.flush-interval-ms:100}")
+	public void flush() {
+		List<LocalCounter> batch = new ArrayList<>();
+		List<Long> deltas = new ArrayList<>();
+		List<LocalCounter> polled = new ArrayList<>();
+
+		LocalCounter old;
+		while ((old = retired.poll()) != null) {
+			polled.add(old);
+			collect(old, batch, deltas);
+		}
+		for (LocalCounter counter : counters.values()) {
+			collect(counter, batch, deltas);
+		}
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		List<List<Object>> results = new ArrayList<>(1);
+		boolean sent;
+		try {
+			sent = flushGuard.run(() -> results.add(redisTemplate.executePipelined(new SessionCallback<Object>() {
+				@Override
+				@SuppressWarnings("unchecked")
+				public Object execute(RedisOperations operations) throws DataAccessException {
+					for (int i = 0; i < batch.size(); i++) {
+						LocalCounter counter = batch.get(i);
+						String currentKey = counterKey(counter.spec, counter.windowStart);
+						operations.opsForValue().increment(currentKey, deltas.get(i));
+						operations.expire(currentKey, 2 * counter.spec.windowMillis(), TimeUnit.MILLISECONDS);
+						operations.opsForValue().get(counterKey(counter.spec, counter.windowStart - counter.spec.timeWindowSeconds()));
+					}
+					return null;
+				}
+			})));
+		} catch (RuntimeException e) {
+			giveBack(batch, deltas, polled);
+			log.warn("Failed to flush {} local rate limit counters to Redis: {}", batch.size(), e.getMessage());
+			return;
+		}
+		if (!sent) {
+			giveBack(batch, deltas, polled);
+			log.debug("Redis rate limiting circuit is open, kept {} local rate limit counters for the next flush", batch.size());
+			return;
+		}
+
+		List<Object> counts = results.get(0);
+		for (int i = 0; i < batch.size(); i++) {
+			batch.get(i).refresh(parse(counts.get(i * 3 + 2)), parse(counts.get(i * 3)));
+		}
+
+		log.debug("Flushed {} local rate limit counters to Redis", batch.size());
+	}
+
+	@Override
+	@Scheduled(fixedRate = 60000) // 1 minute
+	public void cleanupExpired() {
+		long now = Instant.now().toEpochMilli();
+		int removed = 0;
+
+		var iterator = counters.values().iterator();
+		while (iterator.hasNext()) {
+			LocalCounter counter = iterator.next();
+			if (counter.windowStart * 1000 + counter.spec.windowMillis() <= now) {
+				iterator.remove();
+				retired.add(counter);
+				removed++;
+			}
+		}
+
+		if (removed > 0) {
+			log.debug("Retired {} local rate limit counters from past windows", removed);
+		}
+	}
+
+	private LocalCounter counterFor(LimitSpec spec, long now) {
+		long windowStart = RateLimitAlgorithms.alignedWindowStart(now, spec.timeWindowSeconds());
+
+		while (true) {
+			LocalCounter counter = counters.computeIfAbsent(spec.key(), k -> new LocalCounter(spec, windowStart, 0));
+			if (counter.windowStart == windowStart && counter.spec.timeWindowSeconds() == spec.timeWindowSeconds()) {
+				return counter;
+			}
+
+			// Window rolled over: what this node saw becomes the previous window, the rest is flushed later
+			long previous = counter.windowStart + spec.timeWindowSeconds() == windowStart
+					? counter.globalCurrent + counter.pending()
+					: 0;
+			if (counters.replace(spec.key(), counter, new LocalCounter(spec, windowStart, previous))) {
+				retired.add(counter);
+			}
+		}
+	}
+
+	/**
+	 * Give the deltas of an unsent batch back so the next flush retries them
+	 */
+	private void giveBack(List<LocalCounter> batch, List<Long> deltas, List<LocalCounter> polled) {
+		for (int i = 0; i < batch.size(); i++) {
+			LocalCounter counter = batch.get(i);
+			counter.lock.lock();
+			try {
+				counter.flushed -= deltas.get(i);
+			} finally {
+				counter.lock.unlock();
+			}
+		}
+		// Retired counters are only reachable through the queue, put back the unsent ones whose window still counts
+		long now = Instant.now().toEpochMilli();
+		for (LocalCounter counter : polled) {
+			if (counter.pending() > 0 && counter.windowStart * 1000 + 2 * counter.spec.windowMillis() > now) {
+				retired.add(counter);
+			}
+		}
+	}
+
+	private static void collect(LocalCounter counter, List<LocalCounter> batch, List<Long> deltas) {
+		counter.lock.lock();
+		try {
+			long delta = counter.pending();
+			if (delta <= 0) {
+				return;
+			}
+			// Marked as flushed up front so a concurrent escalation doesn't send the same attempts again
+			counter.flushed += delta;
+			batch.add(counter);
+			deltas.add(delta);
+		} finally {
+			counter.lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs a flush's Redis call, or skips it
+	 */
+	@FunctionalInterface
+	interface FlushGuard {
+		/**
+		 * @return Whether the call ran, false if it was skipped
+		 */
+		boolean run(Runnable call);
+	}
+
+	/**
+	 * Local view of one key in one fixed window
+	 * The adder is never reset, the pending delta is what was added minus what was already sent to Redis
+	 */
+	private static class LocalCounter {
+		private final LimitSpec spec;
+		private final long windowStart;
+		private final LongAdder added = new LongAdder();
+		private final ReentrantLock lock = new ReentrantLock();
+		// Written under the lock, read without it on the hot path
+		private volatile long flushed;
+		// Last counts read from Redis, they include what this node already flushed
+		private volatile long globalPrevious;
+		private volatile long globalCurrent;
+
+		LocalCounter(LimitSpec spec, long windowStart, long globalPrevious) {
+			this.spec = spec;
+			this.windowStart = windowStart;
+			this.globalPrevious = globalPrevious;
+		}
+
+		long pending() {
+			return added.sum() - flushed;
+		}
+
+		void refresh(long previous, long current) {
+			globalPrevious = previous;
+			globalCurrent = Math.max(globalCurrent, current);
+		}
+	}
+}
@@ -1,135 +1,332 @@
 package kaiquebt.dev.instrutorbrasil.service.storage;
 
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * In-memory implementation of rate limit storage
  * Uses ConcurrentHashMap for thread-safe operations
  * Suitable for single-instance deployments
+ *
+ * EXACT_LOG keeps a ring of the last maxAttempts + 1 timestamps per key,
+ * SLIDING_WINDOW_COUNTER and GCRA keep a single packed long updated with CAS
+ *
+ * Expired buckets are reclaimed through a timing wheel of one-second slots instead of sweeping the whole map:
+ * each bucket sits in the slot of its expiry, a scheduled task drains the due slots every second,
+ * and every attempt also drains a few due buckets, so memory follows the live keys closely
+ * A bucket touched after it was scheduled is simply moved to its new expiry slot when its old one comes up
+ * An attempt that lands on a bucket reclaimed in the meantime is recorded again on the bucket now in the map
  */
 @Slf4j
 public class InMemoryRateLimitStorage implements RateLimitStorage {
 
+	// ~68 minutes of one-second slots, buckets expiring further out go around the wheel again
+	private static final int WHEEL_SLOTS = 4096;
+	private static final int RECLAIM_ON_ACCESS = 2;
+	private static final int RECLAIM_PER_TICK = 100_000;
+
 	private final Map<String, RateLimitBucket> buckets = new ConcurrentHashMap<>();
+	private final Queue<RateLimitBucket>[] wheel;
+	private final AtomicBoolean reclaiming = new AtomicBoolean();
+	// Next slot to drain, in epoch seconds, only touched while holding reclaiming
+	private long nextTick;
+
+	@SuppressWarnings("unchecked")
+	public InMemoryRateLimitStorage() {
+		wheel = new Queue[WHEEL_SLOTS];
+		for (int i = 0; i < WHEEL_SLOTS; i++) {
+			wheel[i] = new ConcurrentLinkedQueue<>();
+		}
+		nextTick = System.currentTimeMillis() / 1000;
+	}
 
 	@Override
-	public int recordAttempt(String key, int timeWindowSeconds) {
-		Instant now = Instant.now();
-
-		RateLimitBucket bucket = buckets.compute(key, (k, existingBucket) -> {
-			if (existingBucket == null) {
-				// First request for this key
-				RateLimitBucket newBucket = new RateLimitBucket(now, timeWindowSeconds);
-				newBucket.increment();
-				return newBucket;
-			}
+	public AttemptResult recordAttempt(LimitSpec spec) {
+		long now = System.currentTimeMillis();
+		reclaim(now, RECLAIM_ON_ACCESS);
 
-			if (existingBucket.isExpired(now)) {
-				// Window expired, reset counter
-				RateLimitBucket newBucket = new RateLimitBucket(now, timeWindowSeconds);
-				newBucket.increment();
-				return newBucket;
+		while (true) {
+			RateLimitBucket bucket = buckets.computeIfAbsent(spec.key(), k -> newBucket(spec));
+			if (bucket.matches(spec)) {
+				AttemptResult result = bucket.record(spec, now);
+				if (buckets.get(spec.key()) != bucket) {
+					// Reclaimed as expired between the lookup and the record, the attempt went to a dead bucket
+					continue;
+				}
+				if (bucket.markScheduled()) {
+					schedule(bucket);
+				}
+				return result;
 			}
-
-			// Window still active
-			existingBucket.increment();
-			return existingBucket;
-		});
-
-		return bucket.getAttempts();
+			// The limit on this key was reconfigured, start over with the new algorithm
+			buckets.replace(spec.key(), bucket, newBucket(spec));
+		}
 	}
 
 	@Override
-	public int getAttemptCount(String key, int timeWindowSeconds) {
-		RateLimitBucket bucket = buckets.get(key);
-		if (bucket == null) {
-			return 0;
-		}
-
-		Instant now = Instant.now();
-		if (bucket.isExpired(now)) {
+	public int getAttemptCount(LimitSpec spec) {
+		RateLimitBucket bucket = buckets.get(spec.key());
+		if (bucket == null || !bucket.matches(spec)) {
 			return 0;
 		}
+		return bucket.count(spec, System.currentTimeMillis());
+	}
 
-		return bucket.getAttempts();
+	@Override
+	public long getKeyCount() {
+		return buckets.size();
 	}
 
+	/**
+	 * Drain the wheel slots that are due, called every second
+	 */
 	@Override
-	@Scheduled(fixedRate = 3600000) // 1 hour
+	@Scheduled(fixedRate = 1000)
 	public void cleanupExpired() {
-		Instant now = Instant.now();
+		int removed = reclaim(System.currentTimeMillis(), RECLAIM_PER_TICK);
+
+		if (removed > 0) {
+			log.debug("Cleaned up {} expired in-memory rate limit buckets", removed);
+		}
+	}
+
+	/**
+	 * Process up to budget buckets from the due slots, removing the expired ones
+	 * Only one thread reclaims at a time, others skip instead of waiting
+	 *
+	 * @return Number of buckets removed
+	 */
+	private int reclaim(long now, int budget) {
+		if (!reclaiming.compareAndSet(false, true)) {
+			return 0;
+		}
+
 		int removed = 0;
+		try {
+			long nowTick = now / 1000;
+			List<RateLimitBucket> deferred = new ArrayList<>();
+
+			while (nextTick <= nowTick && budget > 0) {
+				Queue<RateLimitBucket> slot = wheel[slotOf(nextTick)];
+				RateLimitBucket bucket = slot.poll();
+				if (bucket == null) {
+					nextTick++;
+					continue;
+				}
+				budget--;
+
+				if (buckets.get(bucket.key()) != bucket) {
+					// Replaced by a bucket with another algorithm, which has its own slot
+					continue;
+				}
+
+				if (bucket.isExpired(now)) {
+					if (buckets.remove(bucket.key(), bucket)) {
+						removed++;
+					}
+					continue;
+				}
+
+				// Touched since it was scheduled, move it to its current expiry
+				long tick = Math.max(nowTick, bucket.expiresAt() / 1000) + 1;
+				if (slotOf(tick) == slotOf(nextTick)) {
+					// Due a full turn later, put it back once this slot is done
+					deferred.add(bucket);
+				} else {
+					wheel[slotOf(tick)].add(bucket);
+				}
+			}
 
-		var iterator = buckets.entrySet().iterator();
-		while (iterator.hasNext()) {
-			var entry = iterator.next();
-			if (entry.getValue().isExpired(now)) {
-				iterator.remove();
-				removed++;
+			for (RateLimitBucket bucket : deferred) {
+				wheel[slotOf(nextTick)].add(bucket);
 			}
+		} finally {
+			reclaiming.set(false);
 		}
+		return removed;
+	}
 
-		if (removed > 0) {
-			log.info("Cleaned up {} expired in-memory rate limit buckets", removed);
+	/**
+	 * Put a new bucket in the slot after its expiry
+	 * Never the current second, whose slot the reclaimer may already have drained
+	 */
+	private void schedule(RateLimitBucket bucket) {
+		long tick = Math.max(System.currentTimeMillis() / 1000, bucket.expiresAt() / 1000) + 1;
+		wheel[slotOf(tick)].add(bucket);
+	}
+
+	private static int slotOf(long tick) {
+		return (int) (tick & (WHEEL_SLOTS - 1));
+	}
+
+	private static RateLimitBucket newBucket(LimitSpec spec) {
+		if (spec.algorithm() == RateLimit.Algorithm.EXACT_LOG) {
+			return new LogBucket(spec);
 		}
+		return new PackedBucket(spec);
 	}
 
 	/**
-	 * Get the remaining seconds for a rate limit bucket
-	 *
-	 * @param key The rate limit key
-	 * @return Remaining seconds, or 0 if bucket doesn't exist or expired
+	 * Internal interface for the per-key state of each algorithm
 	 */
-	public long getRemainingSeconds(String key) {
-		RateLimitBucket bucket = buckets.get(key);
-		if (bucket == null) {
-			return 0;
+	private interface RateLimitBucket {
+
+		String key();
+
+		/**
+		 * Claim the bucket's single place in the wheel, true only the first time
+		 */
+		boolean markScheduled();
+
+		/**
+		 * Time in epoch milliseconds after which the bucket no longer affects any decision
+		 */
+		long expiresAt();
+
+		boolean matches(LimitSpec spec);
+
+		AttemptResult record(LimitSpec spec, long now);
+
+		int count(LimitSpec spec, long now);
+
+		boolean isExpired(long now);
+	}
+
+	/**
+	 * Exact sliding log, bounded to the timestamps that can still affect a decision
+	 * Only the newest maxAttempts + 1 entries are kept, so a flood of rejected attempts doesn't grow memory
+	 */
+	private static class LogBucket extends WheelEntry implements RateLimitBucket {
+		private final LimitSpec spec;
+		private final long[] timestamps;
+		private int head;
+		private int size;
+
+		LogBucket(LimitSpec spec) {
+			super(spec.key());
+			this.spec = spec;
+			this.timestamps = new long[spec.maxAttempts() + 1];
 		}
 
-		Instant now = Instant.now();
-		if (bucket.isExpired(now)) {
-			return 0;
+		@Override
+		public boolean matches(LimitSpec other) {
+			return other.algorithm() == RateLimit.Algorithm.EXACT_LOG && other.maxAttempts() == spec.maxAttempts();
+		}
+
+		@Override
+		public synchronized AttemptResult record(LimitSpec other, long now) {
+			trim(now - other.windowMillis());
+
+			if (size == timestamps.length) {
+				head = (head + 1) % timestamps.length;
+				size--;
+			}
+			timestamps[(head + size) % timestamps.length] = now;
+			size++;
+
+			if (size <= other.maxAttempts()) {
+				return new AttemptResult(size, 0);
+			}
+			// The next attempt fits once the second oldest entry leaves the window
+			long retryAfterMillis = timestamps[(head + 1) % timestamps.length] + other.windowMillis() - now;
+			return new AttemptResult(size, Math.max(0, (retryAfterMillis + 999) / 1000));
+		}
+
+		@Override
+		public synchronized int count(LimitSpec other, long now) {
+			trim(now - other.windowMillis());
+			return size;
+		}
+
+		@Override
+		public synchronized boolean isExpired(long now) {
+			return size == 0 || timestamps[(head + size - 1) % timestamps.length] <= now - spec.windowMillis();
+		}
+
+		@Override
+		public synchronized long expiresAt() {
+			return size == 0 ? 0 : timestamps[(head + size - 1) % timestamps.length] + spec.windowMillis();
 		}
 
-		return bucket.getRemainingSeconds(now);
+		private void trim(long windowStart) {
+			while (size > 0 && timestamps[head] <= windowStart) {
+				head = (head + 1) % timestamps.length;
+				size--;
+			}
+		}
 	}
 
 	/**
-	 * Internal class to hold rate limit bucket data
+	 * Sliding window counter or GCRA state packed in one long
 	 */
-	private static class RateLimitBucket {
-		private final Instant windowStart;
-		private final int windowSeconds;
-		private final AtomicInteger attempts;
+	private static class PackedBucket extends WheelEntry implements RateLimitBucket {
+		private final LimitSpec spec;
+		private final AtomicLong state = new AtomicLong();
+
+		PackedBucket(LimitSpec spec) {
+			super(spec.key());
+			this.spec = spec;
+		}
+
+		@Override
+		public boolean matches(LimitSpec other) {
+			return other.algorithm() == spec.algorithm();
+		}
+
+		@Override
+		public AttemptResult record(LimitSpec other, long now) {
+			while (true) {
+				long current = state.get();
+				long next = RateLimitAlgorithms.next(current, other, now);
+				if (next == current || state.compareAndSet(current, next)) {
+					return RateLimitAlgorithms.result(current, next, other, now);
+				}
+			}
+		}
+
+		@Override
+		public int count(LimitSpec other, long now) {
+			return RateLimitAlgorithms.count(state.get(), other, now);
+		}
 
-		public RateLimitBucket(Instant windowStart, int windowSeconds) {
-			this.windowStart = windowStart;
-			this.windowSeconds = windowSeconds;
-			this.attempts = new AtomicInteger(0);
+		@Override
+		public boolean isExpired(long now) {
+			return RateLimitAlgorithms.isExpired(state.get(), spec, now);
 		}
 
-		public int increment() {
-			return attempts.incrementAndGet();
+		@Override
+		public long expiresAt() {
+			return RateLimitAlgorithms.expiresAt(state.get(), spec);
 		}
+	}
+
+	/**
+	 * Key and scheduling flag shared by the bucket types
+	 */
+	private abstract static class WheelEntry {
+		private final String key;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
 
-		public int getAttempts() {
-			return attempts.get();
+		WheelEntry(String key) {
+			this.key = key;
 		}
 
-		public boolean isExpired(Instant now) {
-			return now.isAfter(windowStart.plusSeconds(windowSeconds));
+		public String key() {
+			return key;
 		}
 
-		public long getRemainingSeconds(Instant now) {
-			Instant windowEnd = windowStart.plusSeconds(windowSeconds);
-			long remaining = windowEnd.getEpochSecond() - now.getEpochSecond();
-			return Math.max(0, remaining);
+		public boolean markScheduled() {
+			return scheduled.compareAndSet(false, true);
 		}
 	}
 }
@@ -0,0 +1,18 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+
+/**
+ * A single rate limit to check: which key, how many attempts, over which window and with which algorithm
+ *
+ * @param key The rate limit key (e.g., IP address or email)
+ * @param maxAttempts Maximum number of attempts allowed in the window
+ * @param timeWindowSeconds Time window in seconds
+ * @param algorithm Counting algorithm
+ */
+public record LimitSpec(String key, int maxAttempts, int timeWindowSeconds, RateLimit.Algorithm algorithm) {
+
+	public long windowMillis() {
+		return timeWindowSeconds * 1000L;
+	}
+}
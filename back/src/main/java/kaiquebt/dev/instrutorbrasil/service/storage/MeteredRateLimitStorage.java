@@ -0,0 +1,95 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+
+/**
+ * Decorator that times the storage operations on the request path and exposes the number of live keys
+ * Meters are tagged with the storage implementation so memory and Redis latencies can be compared
+ */
+public class MeteredRateLimitStorage implements RateLimitStorage {
+
+	private final RateLimitStorage delegate;
+	private final Timer recordTimer;
+	private final Timer recordBatchTimer;
+	private final Timer countTimer;
+
+	public MeteredRateLimitStorage(RateLimitStorage delegate, MeterRegistry meterRegistry) {
+		this.delegate = delegate;
+
+		String storage = storageName(delegate);
+		this.recordTimer = timer(meterRegistry, storage, "record");
+		this.recordBatchTimer = timer(meterRegistry, storage, "record_batch");
+		this.countTimer = timer(meterRegistry, storage, "count");
+
+		Gauge.builder("rate_limit.storage.keys", delegate, RateLimitStorage::getKeyCount)
+				.description("Rate limit keys held by the storage, -1 when unknown")
+				.tag("storage", storage)
+				.register(meterRegistry);
+
+		if (delegate instanceof CompactRateLimitStorage compact) {
+			FunctionCounter.builder("rate_limit.storage.evictions", compact, CompactRateLimitStorage::getEvictionCount)
+					.description("Live keys evicted because the compact table had no free slot for a new key")
+					.tag("storage", storage)
+					.register(meterRegistry);
+		}
+	}
+
+	public RateLimitStorage getDelegate() {
+		return delegate;
+	}
+
+	public Timer getRecordBatchTimer() {
+		return recordBatchTimer;
+	}
+
+	@Override
+	public AttemptResult recordAttempt(LimitSpec spec) {
+		return recordTimer.record(() -> delegate.recordAttempt(spec));
+	}
+
+	@Override
+	public List<AttemptResult> recordAttempts(List<LimitSpec> specs) {
+		return recordBatchTimer.record(() -> delegate.recordAttempts(specs));
+	}
+
+	@Override
+	public int getAttemptCount(LimitSpec spec) {
+		return countTimer.record(() -> delegate.getAttemptCount(spec));
+	}
+
+	@Override
+	public long getKeyCount() {
+		return delegate.getKeyCount();
+	}
+
+	/**
+	 * Not timed, storages schedule their own cleanup on the concrete bean and never go through this wrapper
+	 */
+	@Override
+	public void cleanupExpired() {
+		delegate.cleanupExpired();
+	}
+
+	/**
+	 * Simple name of the storage doing the work, looking through the circuit breaker
+	 */
+	public static String storageName(RateLimitStorage storage) {
+		if (storage instanceof ResilientRateLimitStorage resilient) {
+			return resilient.getDelegate().getClass().getSimpleName();
+		}
+		return storage.getClass().getSimpleName();
+	}
+
+	private static Timer timer(MeterRegistry meterRegistry, String storage, String operation) {
+		return Timer.builder("rate_limit.storage.operation")
+				.description("Latency of rate limit storage operations")
+				.tag("storage", storage)
+				.tag("operation", operation)
+				.register(meterRegistry);
+	}
+}
@@ -0,0 +1,227 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+
+/**
+ * Arithmetic shared by the storages for the O(1)-memory algorithms
+ * In-memory storages keep the state packed in a single long so it can be updated with one CAS,
+ * Redis storages keep the raw values and only reuse the result computations
+ * The high 32 bits of a packed state always hold epoch seconds (window start or theoretical arrival time)
+ *
+ * SLIDING_WINDOW_COUNTER: window start (32 bits) | previous window count (16 bits) | current window count (16 bits)
+ * GCRA: theoretical arrival time, seconds (32 bits) | milliseconds remainder (32 bits)
+ */
+final class RateLimitAlgorithms {
+
+	private static final int MAX_COUNT = 0xFFFF;
+
+	private RateLimitAlgorithms() {
+	}
+
+	/**
+	 * Compute the state after recording one attempt
+	 * A GCRA attempt over the limit is not charged, so the returned state equals the given one
+	 *
+	 * @param state Current state, 0 for a new key
+	 * @param spec The limit being checked
+	 * @param nowMillis Current time in milliseconds
+	 * @return The next state
+	 */
+	static long next(long state, LimitSpec spec, long nowMillis) {
+		if (spec.algorithm() == RateLimit.Algorithm.GCRA) {
+			long tat = Math.max(gcraArrival(state), nowMillis);
+			long nextTat = tat + gcraInterval(spec);
+			if (nextTat - nowMillis > spec.windowMillis()) {
+				return state;
+			}
+			return packArrival(nextTat);
+		}
+
+		long windowStart = alignedWindowStart(nowMillis, spec.timeWindowSeconds());
+		long stateStart = windowStart(state);
+		int previous = previousCount(state);
+		int current = currentCount(state);
+
+		if (stateStart == windowStart) {
+			return packCounter(windowStart, previous, Math.min(current + 1, MAX_COUNT));
+		}
+		if (stateStart + spec.timeWindowSeconds() == windowStart) {
+			return packCounter(windowStart, current, 1);
+		}
+		return packCounter(windowStart, 0, 1);
+	}
+
+	/**
+	 * Describe the outcome of a transition computed by next
+	 *
+	 * @param previous State before the attempt
+	 * @param next State after the attempt
+	 * @param spec The limit being checked
+	 * @param nowMillis Time used to compute the transition
+	 * @return The attempt count and retry-after
+	 */
+	static AttemptResult result(long previous, long next, LimitSpec spec, long nowMillis) {
+		if (spec.algorithm() == RateLimit.Algorithm.GCRA) {
+			long arrival = next == previous ? Math.max(gcraArrival(previous), nowMillis) : gcraArrival(next);
+			return gcraResult(next != previous, arrival, spec, nowMillis);
+		}
+		long elapsed = nowMillis - windowStart(next) * 1000;
+		return slidingWindowResult(previousCount(next), currentCount(next), elapsed, spec);
+	}
+
+	/**
+	 * Weighted count and retry-after for a sliding window counter
+	 *
+	 * @param previous Attempts in the previous fixed window
+	 * @param current Attempts in the current fixed window, including this one
+	 * @param elapsedMillis Time since the current fixed window started
+	 * @param spec The limit being checked
+	 */
+	static AttemptResult slidingWindowResult(long previous, long current, long elapsedMillis, LimitSpec spec) {
+		long windowMillis = spec.windowMillis();
+		int attempts = weightedCount(previous, current, elapsedMillis, windowMillis);
+
+		if (attempts <= spec.maxAttempts()) {
+			return new AttemptResult(attempts, 0);
+		}
+		return new AttemptResult(attempts, toSeconds(counterRetryAfter(previous, current, elapsedMillis, windowMillis, spec.maxAttempts())));
+	}
+
+	/**
+	 * Attempt count and retry-after for GCRA
+	 *
+	 * @param allowed Whether the attempt conformed and moved the arrival time
+	 * @param arrivalMillis Theoretical arrival time after the attempt if allowed, before it otherwise
+	 * @param spec The limit being checked
+	 */
+	static AttemptResult gcraResult(boolean allowed, long arrivalMillis, LimitSpec spec, long nowMillis) {
+		long interval = gcraInterval(spec);
+		if (!allowed) {
+			long retryAfterMillis = arrivalMillis + interval - spec.windowMillis() - nowMillis;
+			return new AttemptResult(spec.maxAttempts() + 1, toSeconds(retryAfterMillis));
+		}
+		return new AttemptResult(gcraCount(arrivalMillis, interval, nowMillis), 0);
+	}
+
+	/**
+	 * Emission interval of a GCRA limit, the window spread evenly over the allowed attempts
+	 */
+	static long gcraInterval(LimitSpec spec) {
+		return Math.max(1, (spec.windowMillis() + spec.maxAttempts() - 1) / spec.maxAttempts());
+	}
+
+	/**
+	 * Attempts still "in flight" for a GCRA arrival time
+	 */
+	static int gcraCount(long arrivalMillis, long interval, long nowMillis) {
+		long backlog = arrivalMillis - nowMillis;
+		return backlog <= 0 ? 0 : (int) ((backlog + interval - 1) / interval);
+	}
+
+	/**
+	 * Attempt count of a state at a given time, without recording anything
+	 */
+	static int count(long state, LimitSpec spec, long nowMillis) {
+		if (state == 0) {
+			return 0;
+		}
+
+		if (spec.algorithm() == RateLimit.Algorithm.GCRA) {
+			return gcraCount(gcraArrival(state), gcraInterval(spec), nowMillis);
+		}
+
+		long windowMillis = spec.windowMillis();
+		long windowStart = alignedWindowStart(nowMillis, spec.timeWindowSeconds());
+		long elapsed = nowMillis - windowStart * 1000;
+
+		if (windowStart(state) == windowStart) {
+			return weightedCount(previousCount(state), currentCount(state), elapsed, windowMillis);
+		}
+		if (windowStart(state) + spec.timeWindowSeconds() == windowStart) {
+			return weightedCount(currentCount(state), 0, elapsed, windowMillis);
+		}
+		return 0;
+	}
+
+	/**
+	 * Sliding window estimate: the previous window's count weighted by how much of it still overlaps, plus the current one
+	 */
+	static int weightedCount(long previous, long current, long elapsedMillis, long windowMillis) {
+		return (int) Math.min(Integer.MAX_VALUE, previous * (windowMillis - elapsedMillis) / windowMillis + current);
+	}
+
+	/**
+	 * Whether the state no longer affects any decision and can be dropped
+	 */
+	static boolean isExpired(long state, LimitSpec spec, long nowMillis) {
+		return expiresAt(state, spec) <= nowMillis;
+	}
+
+	/**
+	 * Time in epoch milliseconds from which the state no longer affects any decision
+	 * A sliding window counter is still read as the previous window during the next one
+	 */
+	static long expiresAt(long state, LimitSpec spec) {
+		if (spec.algorithm() == RateLimit.Algorithm.GCRA) {
+			return gcraArrival(state);
+		}
+		return (windowStart(state) + 2L * spec.timeWindowSeconds()) * 1000;
+	}
+
+	/**
+	 * Epoch seconds held in the high 32 bits
+	 */
+	static long windowStart(long state) {
+		return state >>> 32;
+	}
+
+	/**
+	 * Time until the weighted count of the next attempt fits in the limit
+	 * Within the current window the previous window's weight has to decay enough,
+	 * if the current window alone is full the wait spills into the next window
+	 */
+	private static long counterRetryAfter(long previous, long current, long elapsed, long windowMillis, int maxAttempts) {
+		int room = maxAttempts - 1;
+		if (current <= room) {
+			if (previous == 0) {
+				return 0;
+			}
+			long fitsAt = (long) Math.ceil(windowMillis * (1 - (double) (room - current) / previous));
+			return Math.max(0, fitsAt - elapsed);
+		}
+		long fitsAt = (long) Math.ceil(windowMillis * (1 - (double) room / current));
+		return (windowMillis - elapsed) + fitsAt;
+	}
+
+	/**
+	 * Start of the fixed window containing the given time, in epoch seconds
+	 */
+	static long alignedWindowStart(long nowMillis, int timeWindowSeconds) {
+		long nowSeconds = nowMillis / 1000;
+		return nowSeconds - (nowSeconds % timeWindowSeconds);
+	}
+
+	private static long gcraArrival(long state) {
+		return (state >>> 32) * 1000 + (state & 0xFFFFFFFFL);
+	}
+
+	private static long packArrival(long arrivalMillis) {
+		return ((arrivalMillis / 1000) << 32) | (arrivalMillis % 1000);
+	}
+
+	private static long packCounter(long windowStart, int previous, int current) {
+		return (windowStart << 32) | ((long) previous << 16) | current;
+	}
+
+	private static int previousCount(long state) {
+		return (int) ((state >>> 16) & MAX_COUNT);
+	}
+
+	private static int currentCount(long state) {
+		return (int) (state & MAX_COUNT);
+	}
+
+	private static long toSeconds(long millis) {
+		return Math.max(0, (millis + 999) / 1000);
+	}
+}
@@ -1,5 +1,8 @@
 package kaiquebt.dev.instrutorbrasil.service.storage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Interface for rate limit storage implementations
  * Allows switching between in-memory and Redis storage
@@ -7,21 +10,45 @@ package kaiquebt.dev.instrutorbrasil.service.storage;
 public interface RateLimitStorage {
 
 	/**
-	 * Record a rate limit attempt for the given key
+	 * Record a rate limit attempt using the spec's algorithm
+	 *
+	 * @param spec The key, limit, window and algorithm
+	 * @return The number of attempts in the current window after adding this attempt,
+	 *         and the seconds until a new attempt is allowed when over the limit
+	 */
+	AttemptResult recordAttempt(LimitSpec spec);
+
+	/**
+	 * Record one attempt for each spec, e.g. all the @RateLimit annotations of an endpoint
+	 * Remote implementations send the whole batch in a single round-trip
 	 *
-	 * @param key The rate limit key (e.g., IP address or email)
-	 * @return The number of attempts in the current time window after adding this attempt
+	 * @param specs The limits to record, all are recorded even if one is exceeded
+	 * @return One result per spec, in the same order
 	 */
-	int recordAttempt(String key, int timeWindowSeconds);
+	default List<AttemptResult> recordAttempts(List<LimitSpec> specs) {
+		List<AttemptResult> results = new ArrayList<>(specs.size());
+		for (LimitSpec spec : specs) {
+			results.add(recordAttempt(spec));
+		}
+		return results;
+	}
 
 	/**
-	 * Get the current number of attempts for the given key within the time window
+	 * Get the current number of attempts for the given limit without recording one
 	 *
-	 * @param key The rate limit key
-	 * @param timeWindowSeconds The time window in seconds
+	 * @param spec The key, limit, window and algorithm
 	 * @return The number of attempts in the current time window
 	 */
-	int getAttemptCount(String key, int timeWindowSeconds);
+	int getAttemptCount(LimitSpec spec);
+
+	/**
+	 * Number of keys currently held by this storage, for monitoring
+	 *
+	 * @return The number of live keys, or -1 if the storage can't tell cheaply (e.g. keys live in Redis)
+	 */
+	default long getKeyCount() {
+		return -1;
+	}
 
 	/**
 	 * Clean up expired rate limit data
@@ -1,29 +1,55 @@
 package kaiquebt.dev.instrutorbrasil.service.storage;
 
 import jakarta.annotation.PostConstruct;
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Redis-based implementation of rate limit storage
- * Uses Redis sorted sets for sliding window rate limiting
+ * EXACT_LOG uses Redis sorted sets (one member per attempt), SLIDING_WINDOW_COUNTER and GCRA
+ * plain integer keys so high-volume limits cost O(1) memory per key
+ * Every attempt is one atomic Lua script call, trimming, adding, counting and computing the retry-after included
  * Suitable for multi-instance deployments with shared rate limiting
  */
 @Slf4j
 @RequiredArgsConstructor
 public class RedisRateLimitStorage implements RateLimitStorage {
 
-	private final RedisTemplate<String, String> redisTemplate;
-	private static final String KEY_PREFIX = "rate_limit:";
+	protected final RedisTemplate<String, String> redisTemplate;
+	protected static final String KEY_PREFIX = "rate_limit:";
+
+	// Each script replies with two integers
+	private static final RedisScript<List<Long>> SLIDING_LOG_SCRIPT = loadScript("redis/rate-limit-sliding-log.lua");
+	private static final RedisScript<List<Long>> SLIDING_WINDOW_COUNTER_SCRIPT = loadScript("redis/rate-limit-sliding-window-counter.lua");
+	private static final RedisScript<List<Long>> GCRA_SCRIPT = loadScript("redis/rate-limit-gcra.lua");
+
+	/**
+	 * Whether startup fails when Redis is unreachable
+	 * Disabled when a circuit breaker handles Redis outages, so the app can start with Redis down
+	 */
+	@Setter
+	private boolean failFast = true;
 
 	/**
 	 * Validate Redis connection on startup
-	 * Fails fast if Redis is not available
+	 * Fails fast if Redis is not available (unless failFast is off)
 	 */
 	@PostConstruct
 	public void validateConnection() {
@@ -38,46 +64,92 @@ public class RedisRateLimitStorage implements RateLimitStorage {
 							"app.rate-limit.storage-type to MEMORY. Error: %s",
 					e.getMessage()
 			);
-			log.error(errorMsg);
-			throw new IllegalStateException(errorMsg, e);
+			fail(errorMsg, e);
 		} catch (Exception e) {
 			String errorMsg = String.format(
 					"Failed to validate Redis connection for rate limiting: %s",
 					e.getMessage()
 			);
-			log.error(errorMsg);
-			throw new IllegalStateException(errorMsg, e);
+			fail(errorMsg, e);
 		}
 	}
 
+	private void fail(String errorMsg, Exception e) {
+		if (!failFast) {
+			log.warn("{} - starting anyway, rate limiting falls back until Redis is reachable", errorMsg);
+			return;
+		}
+		log.error(errorMsg);
+		throw new IllegalStateException(errorMsg, e);
+	}
+
 	@Override
-	public int recordAttempt(String key, int timeWindowSeconds) {
-		String redisKey = KEY_PREFIX + key;
+	public AttemptResult recordAttempt(LimitSpec spec) {
 		long now = Instant.now().toEpochMilli();
-		long windowStart = now - (timeWindowSeconds * 1000L);
-
-		// Remove old entries outside the time window
-		redisTemplate.opsForZSet().removeRangeByScore(redisKey, 0, windowStart);
 
-		// Add current timestamp
-		redisTemplate.opsForZSet().add(redisKey, String.valueOf(now), now);
+		return switch (spec.algorithm()) {
+			case EXACT_LOG -> recordLogAttempt(spec, now);
+			case SLIDING_WINDOW_COUNTER -> recordCounterAttempt(spec, now);
+			case GCRA -> recordGcraAttempt(spec, now);
+		};
+	}
 
-		// Set expiration on the key (window + buffer)
-		redisTemplate.expire(redisKey, timeWindowSeconds + 60, TimeUnit.SECONDS);
+	/**
+	 * Record several attempts in one round-trip
+	 * Every algorithm has a script, so the whole batch is sent as one pipeline of EVAL calls
+	 */
+	@Override
+	public List<AttemptResult> recordAttempts(List<LimitSpec> specs) {
+		if (specs.size() == 1) {
+			return List.of(recordAttempt(specs.get(0)));
+		}
 
-		// Count attempts in the current window
-		Long count = redisTemplate.opsForZSet().zCard(redisKey);
+		long now = Instant.now().toEpochMilli();
+		List<ScriptCall> calls = specs.stream().map(spec -> scriptCall(spec, now)).toList();
 
-		log.debug("Redis rate limit - Key: {}, Attempts: {}, Window: {}s", key, count, timeWindowSeconds);
+		List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public Object execute(RedisOperations operations) throws DataAccessException {
+				for (ScriptCall call : calls) {
+					operations.execute(call.script(), call.keys(), call.args());
+				}
+				return null;
+			}
+		});
 
-		return count != null ? count.intValue() : 1;
+		List<AttemptResult> results = new ArrayList<>(specs.size());
+		for (int i = 0; i < specs.size(); i++) {
+			@SuppressWarnings("unchecked")
+			List<Long> reply = (List<Long>) replies.get(i);
+			results.add(scriptResult(specs.get(i), now, reply));
+		}
+		return results;
 	}
 
 	@Override
-	public int getAttemptCount(String key, int timeWindowSeconds) {
-		String redisKey = KEY_PREFIX + key;
+	public int getAttemptCount(LimitSpec spec) {
 		long now = Instant.now().toEpochMilli();
-		long windowStart = now - (timeWindowSeconds * 1000L);
+
+		if (spec.algorithm() == RateLimit.Algorithm.SLIDING_WINDOW_COUNTER) {
+			long windowStart = RateLimitAlgorithms.alignedWindowStart(now, spec.timeWindowSeconds());
+			List<String> counts = redisTemplate.opsForValue().multiGet(List.of(
+					counterKey(spec, windowStart - spec.timeWindowSeconds()),
+					counterKey(spec, windowStart)
+			));
+			if (counts == null) {
+				return 0;
+			}
+			return RateLimitAlgorithms.weightedCount(parse(counts.get(0)), parse(counts.get(1)), now - windowStart * 1000, spec.windowMillis());
+		}
+
+		if (spec.algorithm() == RateLimit.Algorithm.GCRA) {
+			long arrival = parse(redisTemplate.opsForValue().get(gcraKey(spec)));
+			return RateLimitAlgorithms.gcraCount(arrival, RateLimitAlgorithms.gcraInterval(spec), now);
+		}
+
+		String redisKey = KEY_PREFIX + spec.key();
+		long windowStart = now - spec.windowMillis();
 
 		// Remove old entries outside the time window
 		redisTemplate.opsForZSet().removeRangeByScore(redisKey, 0, windowStart);
@@ -96,31 +168,151 @@ public class RedisRateLimitStorage implements RateLimitStorage {
 	}
 
 	/**
-	 * Get the remaining seconds for a rate limit bucket
+	 * Exact sliding log, one sorted set member per attempt
+	 */
+	protected AttemptResult recordLogAttempt(LimitSpec spec, long now) {
+		AttemptResult result = recordScriptAttempt(spec, now);
+
+		log.debug("Redis rate limit - Key: {}, Attempts: {}, Window: {}s", spec.key(), result.attempts(), spec.timeWindowSeconds());
+
+		return result;
+	}
+
+	/**
+	 * Sliding window counter, two integer keys per limit (current and previous fixed window)
+	 */
+	protected AttemptResult recordCounterAttempt(LimitSpec spec, long now) {
+		long windowStart = RateLimitAlgorithms.alignedWindowStart(now, spec.timeWindowSeconds());
+
+		long[] counts = incrementCounter(spec, windowStart, 1);
+		if (counts == null) {
+			return new AttemptResult(1, 0);
+		}
+
+		return RateLimitAlgorithms.slidingWindowResult(counts[0], counts[1], now - windowStart * 1000, spec);
+	}
+
+	/**
+	 * Add to the current window's counter and read the previous one in a single script call
 	 *
-	 * @param key The rate limit key
-	 * @param timeWindowSeconds The time window in seconds
-	 * @return Remaining seconds, or 0 if no rate limit is active
+	 * @param spec The limit being checked
+	 * @param windowStart Start of the current fixed window, in epoch seconds
+	 * @param delta Attempts to add
+	 * @return The previous and current window counts, or null if the script returned something unexpected
 	 */
-	public long getRemainingSeconds(String key, int timeWindowSeconds) {
-		String redisKey = KEY_PREFIX + key;
-		long now = Instant.now().toEpochMilli();
+	protected long[] incrementCounter(LimitSpec spec, long windowStart, long delta) {
+		List<Long> result = redisTemplate.execute(
+				SLIDING_WINDOW_COUNTER_SCRIPT,
+				List.of(counterKey(spec, windowStart), counterKey(spec, windowStart - spec.timeWindowSeconds())),
+				String.valueOf(spec.windowMillis()),
+				String.valueOf(delta)
+		);
 
-		// Get the oldest entry in the current window
-		var oldest = redisTemplate.opsForZSet().range(redisKey, 0, 0);
+		if (result == null || result.size() < 2) {
+			log.warn("Unexpected sliding window counter script result for key {}: {}", spec.key(), result);
+			return null;
+		}
 
-		if (oldest == null || oldest.isEmpty()) {
-			return 0;
+		return new long[] {result.get(0), result.get(1)};
+	}
+
+	/**
+	 * GCRA, one integer key per limit holding the theoretical arrival time
+	 */
+	protected AttemptResult recordGcraAttempt(LimitSpec spec, long now) {
+		return recordScriptAttempt(spec, now);
+	}
+
+	private AttemptResult recordScriptAttempt(LimitSpec spec, long now) {
+		ScriptCall call = scriptCall(spec, now);
+		return scriptResult(spec, now, redisTemplate.execute(call.script(), call.keys(), call.args()));
+	}
+
+	/**
+	 * The script, keys and arguments that record one attempt with the spec's algorithm
+	 */
+	protected ScriptCall scriptCall(LimitSpec spec, long now) {
+		return switch (spec.algorithm()) {
+			case EXACT_LOG -> new ScriptCall(
+					SLIDING_LOG_SCRIPT,
+					List.of(KEY_PREFIX + spec.key()),
+					String.valueOf(now),
+					String.valueOf(spec.windowMillis()),
+					uniqueMember(now),
+					String.valueOf(spec.maxAttempts()));
+			case SLIDING_WINDOW_COUNTER -> {
+				long windowStart = RateLimitAlgorithms.alignedWindowStart(now, spec.timeWindowSeconds());
+				yield new ScriptCall(
+						SLIDING_WINDOW_COUNTER_SCRIPT,
+						List.of(counterKey(spec, windowStart), counterKey(spec, windowStart - spec.timeWindowSeconds())),
+						String.valueOf(spec.windowMillis()),
+						"1");
+			}
+			case GCRA -> new ScriptCall(
+					GCRA_SCRIPT,
+					List.of(gcraKey(spec)),
+					String.valueOf(now),
+					String.valueOf(RateLimitAlgorithms.gcraInterval(spec)),
+					String.valueOf(spec.windowMillis()));
+		};
+	}
+
+	/**
+	 * Turn the reply of a script built by scriptCall into an attempt result
+	 */
+	protected AttemptResult scriptResult(LimitSpec spec, long now, List<Long> reply) {
+		if (reply == null || reply.size() < 2) {
+			log.warn("Unexpected {} script result for key {}: {}", spec.algorithm(), spec.key(), reply);
+			return new AttemptResult(1, 0);
 		}
 
+		long first = reply.get(0);
+		long second = reply.get(1);
+
+		return switch (spec.algorithm()) {
+			case EXACT_LOG -> new AttemptResult((int) first, (second + 999) / 1000);
+			case SLIDING_WINDOW_COUNTER -> {
+				long windowStart = RateLimitAlgorithms.alignedWindowStart(now, spec.timeWindowSeconds());
+				yield RateLimitAlgorithms.slidingWindowResult(first, second, now - windowStart * 1000, spec);
+			}
+			case GCRA -> RateLimitAlgorithms.gcraResult(first == 1, second, spec, now);
+		};
+	}
+
+	/**
+	 * Sorted set member for an attempt
+	 * The random suffix keeps attempts in the same millisecond from collapsing into one member
+	 */
+	private static String uniqueMember(long now) {
+		return now + "-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+	}
+
+	// DefaultRedisScript only takes the raw List class, the integer replies are decoded as Long
+	@SuppressWarnings("unchecked")
+	private static RedisScript<List<Long>> loadScript(String path) {
 		try {
-			long oldestTimestamp = Long.parseLong(oldest.iterator().next());
-			long windowEnd = oldestTimestamp + (timeWindowSeconds * 1000L);
-			long remaining = (windowEnd - now) / 1000;
-			return Math.max(0, remaining);
-		} catch (NumberFormatException e) {
-			log.warn("Failed to parse timestamp from Redis: {}", e.getMessage());
-			return 0;
+			String script = new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+			return (RedisScript<List<Long>>) (RedisScript<?>) new DefaultRedisScript<>(script, List.class);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to load Redis script " + path, e);
 		}
 	}
+
+	// The key is wrapped in a hash tag so both windows of a limit live in the same cluster slot
+	protected static String counterKey(LimitSpec spec, long windowStart) {
+		return KEY_PREFIX + "swc:{" + spec.key() + "}:" + windowStart;
+	}
+
+	private static String gcraKey(LimitSpec spec) {
+		return KEY_PREFIX + "gcra:" + spec.key();
+	}
+
+	protected static long parse(Object value) {
+		return value == null ? 0 : Long.parseLong(value.toString());
+	}
+
+	/**
+	 * One script invocation, built once so it can be executed alone or queued in a pipeline
+	 */
+	protected record ScriptCall(RedisScript<List<Long>> script, List<String> keys, Object... args) {}
 }
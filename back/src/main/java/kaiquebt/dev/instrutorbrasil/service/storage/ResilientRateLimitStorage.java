@@ -0,0 +1,312 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.config.RateLimitResilienceProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker in front of a Redis-backed rate limit storage
+ * Errors, calls slower than the slow-call threshold and calls past the timeout count as failures,
+ * after failure-threshold consecutive ones the circuit opens and requests are answered by the fail mode
+ * instead of waiting on Redis: LOCAL counts in an in-memory storage, OPEN allows everything, CLOSED rejects everything
+ * After open-millis one probe call goes to Redis, if it succeeds the circuit closes and, in LOCAL mode,
+ * the attempts counted locally are replayed to Redis in the background
+ *
+ * Redis calls run on a virtual thread so the request thread can give up at the timeout,
+ * the abandoned call is interrupted and ends at the latest with the Redis client's own timeout
+ * Every state change starts a new epoch, results of calls started in an earlier epoch are ignored
+ *
+ * The background flushes of a HYBRID delegate go through the circuit too: skipped while it is open,
+ * bounded by the same timeout, and counted as failures or successes like request calls
+ */
+@Slf4j
+public class ResilientRateLimitStorage implements RateLimitStorage {
+
+	// Attempts replayed per Redis call after an outage
+	private static final int REPLAY_BATCH_SIZE = 500;
+	private static final long FALLBACK_CLEANUP_INTERVAL_MILLIS = 1000;
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	/**
+	 * Circuit state, replaced as a whole on every transition
+	 */
+	private record Circuit(State state, long epoch, long openUntil) {
+	}
+
+	private final RateLimitStorage delegate;
+	private final RateLimitResilienceProperties properties;
+	private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+			Thread.ofVirtual().name("rate-limit-redis-", 1).factory());
+
+	private final AtomicReference<Circuit> circuit = new AtomicReference<>(new Circuit(State.CLOSED, 0, 0));
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	private volatile InMemoryRateLimitStorage fallback = new InMemoryRateLimitStorage();
+	// Attempts counted locally per limit while the circuit was open
+	private volatile Map<LimitSpec, AtomicInteger> outageAttempts = new ConcurrentHashMap<>();
+	// The fallback isn't a bean, so its expired buckets are reclaimed from here while it is in use
+	private final AtomicLong nextFallbackCleanup = new AtomicLong();
+
+	public ResilientRateLimitStorage(RateLimitStorage delegate, RateLimitResilienceProperties properties) {
+		this.delegate = delegate;
+		this.properties = properties;
+		if (delegate instanceof HybridRateLimitStorage hybrid) {
+			hybrid.setFlushGuard(this::callInBackground);
+		}
+	}
+
+	public RateLimitStorage getDelegate() {
+		return delegate;
+	}
+
+	public State getState() {
+		return circuit.get().state();
+	}
+
+	@Override
+	public AttemptResult recordAttempt(LimitSpec spec) {
+		return recordAttempts(List.of(spec)).get(0);
+	}
+
+	@Override
+	public List<AttemptResult> recordAttempts(List<LimitSpec> specs) {
+		Circuit seen = allowCall();
+		if (seen == null) {
+			return fallback(specs);
+		}
+
+		try {
+			return callThroughCircuit(seen, () -> delegate.recordAttempts(specs));
+		} catch (RuntimeException e) {
+			return fallback(specs);
+		}
+	}
+
+	@Override
+	public int getAttemptCount(LimitSpec spec) {
+		if (getState() != State.CLOSED) {
+			return fallback.getAttemptCount(spec);
+		}
+		try {
+			return callWithTimeout(() -> delegate.getAttemptCount(spec));
+		} catch (RuntimeException e) {
+			return fallback.getAttemptCount(spec);
+		}
+	}
+
+	@Override
+	public long getKeyCount() {
+		return delegate.getKeyCount();
+	}
+
+	@Override
+	public void cleanupExpired() {
+		delegate.cleanupExpired();
+		fallback.cleanupExpired();
+	}
+
+	/**
+	 * Run a background Redis call of the delegate, unless the circuit is open
+	 *
+	 * @return Whether the call ran, false if it was skipped
+	 * @throws IllegalStateException if the call failed or timed out
+	 */
+	boolean callInBackground(Runnable call) {
+		Circuit seen = allowCall();
+		if (seen == null) {
+			return false;
+		}
+		callThroughCircuit(seen, () -> {
+			call.run();
+			return null;
+		});
+		return true;
+	}
+
+	/**
+	 * Run a Redis call let through in the given circuit and record its outcome
+	 *
+	 * @throws IllegalStateException if the call failed or timed out
+	 */
+	private <T> T callThroughCircuit(Circuit seen, Supplier<T> call) {
+		long start = System.nanoTime();
+		T result;
+		try {
+			result = callWithTimeout(call);
+		} catch (RuntimeException e) {
+			onFailure(seen, e.getMessage());
+			throw e;
+		}
+
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		if (elapsedMillis > properties.getSlowCallMillis()) {
+			// The answer is still good, but Redis is struggling
+			onFailure(seen, "slow call (" + elapsedMillis + " ms)");
+		} else {
+			onSuccess(seen);
+		}
+		return result;
+	}
+
+	/**
+	 * Run a Redis call, giving up once the timeout has passed
+	 *
+	 * @throws IllegalStateException if the call failed, timed out or the caller was interrupted
+	 */
+	private <T> T callWithTimeout(Supplier<T> call) {
+		Future<T> future = executor.submit(call::get);
+		try {
+			return future.get(properties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new IllegalStateException("timed out after " + properties.getTimeoutMillis() + " ms");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for Redis");
+		}
+	}
+
+	/**
+	 * Whether this call may go to Redis: always when closed, once per open period as a probe otherwise
+	 *
+	 * @return The circuit the call was let through in, null if it must use the fail mode
+	 */
+	private Circuit allowCall() {
+		Circuit current = circuit.get();
+		if (current.state() == State.CLOSED) {
+			return current;
+		}
+		if (current.state() == State.HALF_OPEN || System.currentTimeMillis() < current.openUntil()) {
+			return null;
+		}
+		Circuit probe = new Circuit(State.HALF_OPEN, current.epoch() + 1, current.openUntil());
+		return circuit.compareAndSet(current, probe) ? probe : null;
+	}
+
+	private void onSuccess(Circuit seen) {
+		if (circuit.get() != seen) {
+			// Started before the circuit changed, says nothing about Redis now
+			return;
+		}
+		consecutiveFailures.set(0);
+		if (seen.state() == State.HALF_OPEN
+				&& circuit.compareAndSet(seen, new Circuit(State.CLOSED, seen.epoch() + 1, 0))) {
+			log.info("Redis rate limiting recovered, circuit closed");
+			resync();
+		}
+	}
+
+	private void onFailure(Circuit seen, String reason) {
+		if (circuit.get() != seen) {
+			return;
+		}
+		int failures = consecutiveFailures.incrementAndGet();
+		if (seen.state() == State.HALF_OPEN || failures >= properties.getFailureThreshold()) {
+			long openUntil = System.currentTimeMillis() + properties.getOpenMillis();
+			if (circuit.compareAndSet(seen, new Circuit(State.OPEN, seen.epoch() + 1, openUntil))) {
+				consecutiveFailures.set(0);
+				log.warn("Redis rate limiting circuit opened after {} failure(s), last: {} - fail mode {} for {} ms",
+						failures, reason, properties.getFailMode(), properties.getOpenMillis());
+			}
+		} else {
+			log.debug("Redis rate limiting call failed ({}/{}): {}", failures, properties.getFailureThreshold(), reason);
+		}
+	}
+
+	private List<AttemptResult> fallback(List<LimitSpec> specs) {
+		return switch (properties.getFailMode()) {
+			case LOCAL -> {
+				Map<LimitSpec, AtomicInteger> attempts = outageAttempts;
+				for (LimitSpec spec : specs) {
+					if (attempts.size() < properties.getMaxReplayKeys() || attempts.containsKey(spec)) {
+						attempts.computeIfAbsent(spec, s -> new AtomicInteger()).incrementAndGet();
+					}
+				}
+				InMemoryRateLimitStorage local = fallback;
+				cleanupFallback(local);
+				yield local.recordAttempts(specs);
+			}
+			case OPEN -> Collections.nCopies(specs.size(), new AttemptResult(0, 0));
+			case CLOSED -> {
+				long retryAfterSeconds = Math.max(1, (circuit.get().openUntil() - System.currentTimeMillis() + 999) / 1000);
+				List<AttemptResult> results = new ArrayList<>(specs.size());
+				for (LimitSpec spec : specs) {
+					results.add(new AttemptResult(spec.maxAttempts() + 1, retryAfterSeconds));
+				}
+				yield results;
+			}
+		};
+	}
+
+	/**
+	 * Drain the fallback's due buckets at most once a second, on whichever request gets there first
+	 */
+	private void cleanupFallback(InMemoryRateLimitStorage local) {
+		long now = System.currentTimeMillis();
+		long next = nextFallbackCleanup.get();
+		if (now >= next && nextFallbackCleanup.compareAndSet(next, now + FALLBACK_CLEANUP_INTERVAL_MILLIS)) {
+			local.cleanupExpired();
+		}
+	}
+
+	/**
+	 * Push the attempts counted locally during the outage to Redis, so limits stay enforced across instances
+	 * Only up to maxAttempts + 1 per key are replayed, more wouldn't change any decision
+	 * Sent in batches of REPLAY_BATCH_SIZE so one call doesn't hold a Redis connection for the whole backlog
+	 */
+	private void resync() {
+		Map<LimitSpec, AtomicInteger> attempts = outageAttempts;
+		outageAttempts = new ConcurrentHashMap<>();
+		fallback = new InMemoryRateLimitStorage();
+
+		if (attempts.isEmpty()) {
+			return;
+		}
+
+		executor.execute(() -> {
+			List<LimitSpec> replay = new ArrayList<>();
+			attempts.forEach((spec, count) -> {
+				for (int i = 0; i < Math.min(count.get(), spec.maxAttempts() + 1); i++) {
+					replay.add(spec);
+				}
+			});
+
+			int replayed = 0;
+			try {
+				for (int from = 0; from < replay.size(); from += REPLAY_BATCH_SIZE) {
+					List<LimitSpec> batch = replay.subList(from, Math.min(from + REPLAY_BATCH_SIZE, replay.size()));
+					delegate.recordAttempts(batch);
+					replayed += batch.size();
+				}
+				log.info("Replayed {} rate limit attempt(s) for {} key(s) counted locally during the Redis outage",
+						replayed, attempts.size());
+			} catch (RuntimeException e) {
+				log.warn("Failed to replay local rate limit attempts to Redis after {} of {}: {}",
+						replayed, replay.size(), e.getMessage());
+			}
+		});
+	}
+}
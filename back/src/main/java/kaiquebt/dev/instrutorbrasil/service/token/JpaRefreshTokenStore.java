@@ -0,0 +1,78 @@
+package kaiquebt.dev.instrutorbrasil.service.token;
+
+import kaiquebt.dev.instrutorbrasil.repository.RefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Postgres implementation of refresh token storage, the refresh_tokens table
+ * Expired rows are removed by TokenCleanupService
+ * With partitioned tables a rotated token keeps its expiry date, its partition key, and stays until its partition
+ * is dropped, RefreshTokenService ends its reuse detection window from revokedAt instead
+ */
+@RequiredArgsConstructor
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+
+	private final RefreshTokenRepository refreshTokenRepository;
+	private final boolean partitioned;
+
+	@Override
+	@Transactional
+	public void save(Long userId, String email, byte[] tokenHash, Instant expiryDate) {
+		refreshTokenRepository.insert(tokenHash, userId, expiryDate, Instant.now());
+	}
+
+	@Override
+	@Transactional
+	public Optional<String> rotate(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant revokedExpiry) {
+		if (partitioned) {
+			return refreshTokenRepository.rotateKeepingExpiry(tokenHash, newTokenHash, expiryDate, now);
+		}
+		return refreshTokenRepository.rotate(tokenHash, newTokenHash, expiryDate, now, revokedExpiry);
+	}
+
+	@Override
+	@Transactional
+	public Optional<String> issueGraceToken(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant rotatedAfter) {
+		return refreshTokenRepository.issueGraceToken(tokenHash, newTokenHash, expiryDate, now, rotatedAfter);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Optional<StoredRefreshToken> find(byte[] tokenHash) {
+		return refreshTokenRepository.findByTokenHash(tokenHash)
+				.map(token -> new StoredRefreshToken(
+						token.getUser().getId(),
+						token.getUser().getEmail(),
+						token.getExpiryDate(),
+						token.getRevoked(),
+						token.getRevokedAt()));
+	}
+
+	@Override
+	@Transactional
+	public void revoke(byte[] tokenHash) {
+		refreshTokenRepository.revokeByTokenHash(tokenHash);
+	}
+
+	@Override
+	@Transactional
+	public void delete(byte[] tokenHash) {
+		refreshTokenRepository.deleteByTokenHash(tokenHash);
+	}
+
+	@Override
+	@Transactional
+	public void deleteByUser(Long userId) {
+		refreshTokenRepository.deleteByUserId(userId);
+	}
+
+	@Override
+	@Transactional
+	public int deleteExpired(Instant now, int limit) {
+		return refreshTokenRepository.deleteExpiredBatch(now, limit);
+	}
+}
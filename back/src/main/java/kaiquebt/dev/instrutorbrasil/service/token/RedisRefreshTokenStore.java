@@ -0,0 +1,141 @@
+package kaiquebt.dev.instrutorbrasil.service.token;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Redis implementation of refresh token storage, keeps refresh and logout off the relational database
+ * Each token is a hash under refresh_token:{digest} that expires with the token, so there is nothing to clean up,
+ * and each user has a set of their token digests for deleteByUser
+ * The owner's email is stored with the token so a rotation can load the user from the user cache
+ *
+ * The scripts touch a token and its user's set together, which needs a single Redis node (or all keys in one slot)
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RedisRefreshTokenStore implements RefreshTokenStore {
+
+	private static final String TOKEN_PREFIX = "refresh_token:";
+	private static final String USER_PREFIX = "refresh_token:user:";
+	private static final HexFormat HEX = HexFormat.of();
+
+	private static final RedisScript<String> ROTATE_SCRIPT =
+			RedisScript.of(new ClassPathResource("redis/refresh-token-rotate.lua"), String.class);
+	private static final RedisScript<String> GRACE_SCRIPT =
+			RedisScript.of(new ClassPathResource("redis/refresh-token-grace.lua"), String.class);
+	private static final RedisScript<Long> REVOKE_SCRIPT =
+			RedisScript.of(new ClassPathResource("redis/refresh-token-revoke.lua"), Long.class);
+	private static final RedisScript<Long> DELETE_SCRIPT =
+			RedisScript.of(new ClassPathResource("redis/refresh-token-delete.lua"), Long.class);
+	private static final RedisScript<Long> DELETE_USER_SCRIPT =
+			RedisScript.of(new ClassPathResource("redis/refresh-token-delete-user.lua"), Long.class);
+
+	private final RedisTemplate<String, String> redisTemplate;
+
+	@Override
+	public void save(Long userId, String email, byte[] tokenHash, Instant expiryDate) {
+		String digest = HEX.formatHex(tokenHash);
+		String tokenKey = TOKEN_PREFIX + digest;
+		String userKey = USER_PREFIX + userId;
+
+		redisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public Object execute(RedisOperations operations) throws DataAccessException {
+				operations.opsForHash().putAll(tokenKey, Map.of(
+						"user_id", userId.toString(),
+						"email", email,
+						"expiry", Long.toString(expiryDate.toEpochMilli()),
+						"revoked", "0"));
+				operations.expireAt(tokenKey, expiryDate);
+				operations.opsForSet().add(userKey, digest);
+				operations.expireAt(userKey, expiryDate);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public Optional<String> rotate(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant revokedExpiry) {
+		String newDigest = HEX.formatHex(newTokenHash);
+
+		String email = redisTemplate.execute(ROTATE_SCRIPT,
+				List.of(tokenKey(tokenHash), TOKEN_PREFIX + newDigest),
+				newDigest,
+				Long.toString(expiryDate.toEpochMilli()),
+				Long.toString(now.toEpochMilli()),
+				USER_PREFIX,
+				Long.toString(revokedExpiry.toEpochMilli()));
+		return Optional.ofNullable(email);
+	}
+
+	@Override
+	public Optional<String> issueGraceToken(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant rotatedAfter) {
+		String newDigest = HEX.formatHex(newTokenHash);
+
+		String email = redisTemplate.execute(GRACE_SCRIPT,
+				List.of(tokenKey(tokenHash), TOKEN_PREFIX + newDigest),
+				newDigest,
+				Long.toString(expiryDate.toEpochMilli()),
+				Long.toString(now.toEpochMilli()),
+				USER_PREFIX,
+				Long.toString(rotatedAfter.toEpochMilli()));
+		return Optional.ofNullable(email);
+	}
+
+	@Override
+	public Optional<StoredRefreshToken> find(byte[] tokenHash) {
+		List<Object> fields = redisTemplate.opsForHash().multiGet(tokenKey(tokenHash),
+				List.of("user_id", "email", "expiry", "revoked", "revoked_at"));
+		if (fields == null || fields.get(0) == null) {
+			return Optional.empty();
+		}
+
+		return Optional.of(new StoredRefreshToken(
+				Long.valueOf((String) fields.get(0)),
+				(String) fields.get(1),
+				Instant.ofEpochMilli(Long.parseLong((String) fields.get(2))),
+				"1".equals(fields.get(3)),
+				fields.get(4) != null ? Instant.ofEpochMilli(Long.parseLong((String) fields.get(4))) : null));
+	}
+
+	@Override
+	public void revoke(byte[] tokenHash) {
+		redisTemplate.execute(REVOKE_SCRIPT, List.of(tokenKey(tokenHash)));
+	}
+
+	@Override
+	public void delete(byte[] tokenHash) {
+		redisTemplate.execute(DELETE_SCRIPT, List.of(tokenKey(tokenHash)), HEX.formatHex(tokenHash), USER_PREFIX);
+	}
+
+	@Override
+	public void deleteByUser(Long userId) {
+		Long deleted = redisTemplate.execute(DELETE_USER_SCRIPT, List.of(USER_PREFIX + userId), TOKEN_PREFIX);
+		log.debug("Deleted {} refresh tokens of user {} from Redis", deleted, userId);
+	}
+
+	/**
+	 * Tokens expire on their own through their TTL
+	 */
+	@Override
+	public int deleteExpired(Instant now, int limit) {
+		return 0;
+	}
+
+	private static String tokenKey(byte[] tokenHash) {
+		return TOKEN_PREFIX + HEX.formatHex(tokenHash);
+	}
+}
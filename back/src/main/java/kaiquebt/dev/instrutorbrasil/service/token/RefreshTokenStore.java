@@ -0,0 +1,89 @@
+package kaiquebt.dev.instrutorbrasil.service.token;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Interface for refresh token storage implementations
+ * Tokens are identified by the SHA-256 of the raw token (see OpaqueTokens), the raw value is never stored
+ * Allows switching between Postgres and Redis storage
+ */
+public interface RefreshTokenStore {
+
+	/**
+	 * Store a newly issued token
+	 *
+	 * @param userId The token owner's id
+	 * @param email The token owner's email
+	 * @param tokenHash Digest of the token
+	 * @param expiryDate When the token expires
+	 */
+	void save(Long userId, String email, byte[] tokenHash, Instant expiryDate);
+
+	/**
+	 * Atomically revoke a live token and store its replacement for the same user
+	 * The revoked token is kept at least until revokedExpiry (or its own expiry, if sooner), so presenting it again
+	 * within that window can be recognized as reuse. Stores may keep it longer
+	 *
+	 * @param tokenHash Digest of the presented token
+	 * @param newTokenHash Digest of the replacement
+	 * @param expiryDate When the replacement expires
+	 * @param now Tokens expiring at or before this instant are not rotated, also recorded as the revocation time
+	 * @param revokedExpiry How long the revoked token is kept
+	 * @return Email of the owner, empty if the token is unknown, expired or already revoked
+	 */
+	Optional<String> rotate(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant revokedExpiry);
+
+	/**
+	 * Store the one extra token a rotated token may get when it is presented again shortly after its rotation
+	 * The sibling is recorded on the rotated token in the same atomic step, so no later presentation gets another
+	 *
+	 * @param tokenHash Digest of the rotated token
+	 * @param newTokenHash Digest of the sibling
+	 * @param expiryDate When the sibling expires
+	 * @param now Current time, a rotated token expiring at or before it gets nothing
+	 * @param rotatedAfter Start of the grace window, only a token rotated after it qualifies
+	 * @return Email of the owner, empty if the token wasn't rotated within the window or already has a sibling
+	 */
+	Optional<String> issueGraceToken(byte[] tokenHash, byte[] newTokenHash, Instant expiryDate, Instant now, Instant rotatedAfter);
+
+	/**
+	 * Look a token up, to tell why a rotation failed
+	 *
+	 * @param tokenHash Digest of the token
+	 * @return The stored token, empty if unknown
+	 */
+	Optional<StoredRefreshToken> find(byte[] tokenHash);
+
+	/**
+	 * Mark a token as revoked, keeping it until it expires
+	 *
+	 * @param tokenHash Digest of the token
+	 */
+	void revoke(byte[] tokenHash);
+
+	/**
+	 * Delete a token, no-op if unknown
+	 *
+	 * @param tokenHash Digest of the token
+	 */
+	void delete(byte[] tokenHash);
+
+	/**
+	 * Delete every token of a user, revoked ones and grace siblings included
+	 *
+	 * @param userId The user id
+	 */
+	void deleteByUser(Long userId);
+
+	/**
+	 * Delete one chunk of tokens that expired before the given instant
+	 * Called repeatedly by TokenCleanupService until it returns less than limit
+	 * Stores with native expiry do nothing here
+	 *
+	 * @param now The cutoff
+	 * @param limit Maximum number of tokens to delete
+	 * @return Number of tokens deleted
+	 */
+	int deleteExpired(Instant now, int limit);
+}
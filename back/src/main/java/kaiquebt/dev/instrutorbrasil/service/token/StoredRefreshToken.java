@@ -0,0 +1,14 @@
+package kaiquebt.dev.instrutorbrasil.service.token;
+
+import java.time.Instant;
+
+/**
+ * What a refresh token store knows about a token, independent of where it is kept
+ * revokedAt is only set on tokens revoked by a rotation
+ */
+public record StoredRefreshToken(Long userId, String email, Instant expiryDate, boolean revoked, Instant revokedAt) {
+
+	public boolean isExpired(Instant now) {
+		return expiryDate.compareTo(now) <= 0;
+	}
+}
@@ -0,0 +1,130 @@
+-- Token tables range-partitioned by expiry date, for app.token-cleanup.mode: PARTITIONED
+-- Expired tokens are then removed by dropping whole partitions (TokenPartitionManager) instead of deleting rows
+--
+-- Needs Postgres 14 or later (expired partitions are detached CONCURRENTLY). Run once with the application stopped, then start it with
+-- spring.jpa.hibernate.ddl-auto: validate or none (update would try to add the token_hash unique constraints,
+-- which Postgres rejects without the partition key)
+-- The script creates the partitions for every expiry date a token issued today can get, check partition_days
+-- and the lifetimes at the end first. The application keeps creating them ahead from then on.
+-- The current tables are kept as *_old, live tokens can be copied back, e.g.
+--   INSERT INTO refresh_tokens (token_hash, user_id, expiry_date, revoked, revoked_at, created_at)
+--   SELECT token_hash, user_id, expiry_date, revoked, revoked_at, created_at FROM refresh_tokens_old WHERE expiry_date > now();
+-- Otherwise users log in again and pending email links stop working
+--
+-- Unique constraints must include the partition key, so token_hash uniqueness across partitions is kept by
+-- the check_token_hash_unique trigger instead, which serializes inserts of the same hash with an advisory lock
+-- Identity columns can't be declared on partitioned tables before Postgres 17, so ids come from a plain sequence
+-- There is no DEFAULT partition: a token can only be stored while a partition covers its expiry date, the
+-- application creates them on startup (before serving requests) and every hour, and logs an error when it can't
+-- Rotating a refresh token leaves its expiry date alone, so the row never moves between partitions
+
+BEGIN;
+
+-- Rejects a token_hash already present in any partition of the table named by the trigger argument
+-- Runs on every partition, so the parent table is passed explicitly
+CREATE FUNCTION check_token_hash_unique() RETURNS trigger LANGUAGE plpgsql AS $$
+DECLARE
+    duplicate boolean;
+BEGIN
+    -- Held until commit, so a concurrent insert of the same hash waits and then sees this row
+    PERFORM pg_advisory_xact_lock(hashtext(TG_ARGV[0]), hashtext(encode(NEW.token_hash, 'hex')));
+    EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE token_hash = $1 AND id <> $2)', TG_ARGV[0])
+        INTO duplicate
+        USING NEW.token_hash, NEW.id;
+    IF duplicate THEN
+        RAISE EXCEPTION 'duplicate key value violates unique token_hash of %', TG_ARGV[0]
+            USING ERRCODE = 'unique_violation';
+    END IF;
+    RETURN NEW;
+END
+$$;
+
+ALTER TABLE refresh_tokens RENAME TO refresh_tokens_old;
+ALTER TABLE refresh_tokens_old RENAME CONSTRAINT refresh_tokens_pkey TO refresh_tokens_old_pkey;
+ALTER SEQUENCE refresh_tokens_id_seq RENAME TO refresh_tokens_old_id_seq;
+ALTER INDEX IF EXISTS idx_refresh_tokens_expiry_date RENAME TO idx_refresh_tokens_old_expiry_date;
+ALTER INDEX IF EXISTS idx_refresh_tokens_user_id RENAME TO idx_refresh_tokens_old_user_id;
+CREATE TABLE refresh_tokens (
+    id bigserial NOT NULL,
+    token_hash bytea NOT NULL,
+    user_id bigint NOT NULL REFERENCES users (id),
+    expiry_date timestamp(6) with time zone NOT NULL,
+    revoked boolean NOT NULL,
+    revoked_at timestamp(6) with time zone,
+    grace_token_hash bytea,
+    created_at timestamp(6) with time zone NOT NULL,
+    PRIMARY KEY (id, expiry_date)
+) PARTITION BY RANGE (expiry_date);
+CREATE INDEX idx_refresh_tokens_token_hash ON refresh_tokens (token_hash);
+CREATE INDEX idx_refresh_tokens_expiry_date ON refresh_tokens (expiry_date);
+CREATE INDEX idx_refresh_tokens_user_id ON refresh_tokens (user_id);
+CREATE TRIGGER refresh_tokens_token_hash_unique BEFORE INSERT OR UPDATE OF token_hash ON refresh_tokens
+    FOR EACH ROW EXECUTE FUNCTION check_token_hash_unique('refresh_tokens');
+
+ALTER TABLE password_reset_tokens RENAME TO password_reset_tokens_old;
+ALTER TABLE password_reset_tokens_old RENAME CONSTRAINT password_reset_tokens_pkey TO password_reset_tokens_old_pkey;
+ALTER SEQUENCE password_reset_tokens_id_seq RENAME TO password_reset_tokens_old_id_seq;
+ALTER INDEX IF EXISTS idx_password_reset_tokens_expiry_date RENAME TO idx_password_reset_tokens_old_expiry_date;
+ALTER INDEX IF EXISTS idx_password_reset_tokens_user_id RENAME TO idx_password_reset_tokens_old_user_id;
+CREATE TABLE password_reset_tokens (
+    id bigserial NOT NULL,
+    token_hash bytea NOT NULL,
+    user_id bigint NOT NULL REFERENCES users (id),
+    expiry_date timestamp(6) with time zone NOT NULL,
+    used boolean NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    PRIMARY KEY (id, expiry_date)
+) PARTITION BY RANGE (expiry_date);
+CREATE INDEX idx_password_reset_tokens_token_hash ON password_reset_tokens (token_hash);
+CREATE INDEX idx_password_reset_tokens_expiry_date ON password_reset_tokens (expiry_date);
+CREATE INDEX idx_password_reset_tokens_user_id ON password_reset_tokens (user_id);
+CREATE TRIGGER password_reset_tokens_token_hash_unique BEFORE INSERT OR UPDATE OF token_hash ON password_reset_tokens
+    FOR EACH ROW EXECUTE FUNCTION check_token_hash_unique('password_reset_tokens');
+
+ALTER TABLE email_verification_tokens RENAME TO email_verification_tokens_old;
+ALTER TABLE email_verification_tokens_old RENAME CONSTRAINT email_verification_tokens_pkey TO email_verification_tokens_old_pkey;
+ALTER SEQUENCE email_verification_tokens_id_seq RENAME TO email_verification_tokens_old_id_seq;
+ALTER INDEX IF EXISTS idx_email_verification_tokens_expiry_date RENAME TO idx_email_verification_tokens_old_expiry_date;
+ALTER INDEX IF EXISTS idx_email_verification_tokens_user_id RENAME TO idx_email_verification_tokens_old_user_id;
+CREATE TABLE email_verification_tokens (
+    id bigserial NOT NULL,
+    token_hash bytea NOT NULL,
+    user_id bigint NOT NULL REFERENCES users (id),
+    expiry_date timestamp(6) with time zone NOT NULL,
+    used boolean NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    PRIMARY KEY (id, expiry_date)
+) PARTITION BY RANGE (expiry_date);
+CREATE INDEX idx_email_verification_tokens_token_hash ON email_verification_tokens (token_hash);
+CREATE INDEX idx_email_verification_tokens_expiry_date ON email_verification_tokens (expiry_date);
+CREATE INDEX idx_email_verification_tokens_user_id ON email_verification_tokens (user_id);
+CREATE TRIGGER email_verification_tokens_token_hash_unique BEFORE INSERT OR UPDATE OF token_hash ON email_verification_tokens
+    FOR EACH ROW EXECUTE FUNCTION check_token_hash_unique('email_verification_tokens');
+
+-- Initial partitions, named and aligned the way TokenPartitionManager does it
+DO $$
+DECLARE
+    partition_days CONSTANT int := 1; -- app.token-cleanup.partition-days
+    today CONSTANT date := (now() AT TIME ZONE 'UTC')::date;
+    t record;
+    start_day date;
+BEGIN
+    -- Longest lifetime of each table's tokens in days, rounded up: jwt.refresh-token-expiration,
+    -- app.token.password-reset-expiration and app.token.email-verification-expiration
+    FOR t IN SELECT * FROM (VALUES
+            ('refresh_tokens', 30),
+            ('password_reset_tokens', 1),
+            ('email_verification_tokens', 1)) AS lifetimes(name, days) LOOP
+        start_day := date '1970-01-01' + (today - date '1970-01-01') / partition_days * partition_days;
+        -- One partition past the longest lifetime, like the application does
+        WHILE start_day <= today + t.days + partition_days LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                    t.name || '_p' || to_char(start_day, 'YYYYMMDD'), t.name,
+                    start_day || ' 00:00:00+00', start_day + partition_days || ' 00:00:00+00');
+            start_day := start_day + partition_days;
+        END LOOP;
+    END LOOP;
+END
+$$;
+
+COMMIT;
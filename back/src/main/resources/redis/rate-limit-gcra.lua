@@ -0,0 +1,19 @@
+-- GCRA (generic cell rate algorithm) rate limit, executed atomically in one round-trip
+-- KEYS[1]: theoretical arrival time of the key
+-- ARGV[1]: now (ms), ARGV[2]: emission interval (ms), ARGV[3]: window (ms)
+-- Returns {1 if allowed else 0, arrival time after the attempt if allowed, before it otherwise}
+-- Rejected attempts are not charged, so the key only lives as long as its backlog
+local now = tonumber(ARGV[1])
+local interval = tonumber(ARGV[2])
+local window = tonumber(ARGV[3])
+
+local tat = math.max(tonumber(redis.call('GET', KEYS[1]) or '0'), now)
+local nextTat = tat + interval
+
+if nextTat - now > window then
+  return {0, tat}
+end
+
+redis.call('SET', KEYS[1], nextTat, 'PX', nextTat - now)
+
+return {1, nextTat}
@@ -0,0 +1,24 @@
+-- Sliding log rate limit, executed atomically in one round-trip
+-- KEYS[1]: rate limit key
+-- ARGV[1]: now (ms), ARGV[2]: window (ms), ARGV[3]: unique member, ARGV[4]: max attempts
+-- Returns {attempts in window, ms until the next attempt is allowed (0 if under the limit)}
+local now = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local maxAttempts = tonumber(ARGV[4])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, now - window)
+redis.call('ZADD', KEYS[1], now, ARGV[3])
+redis.call('PEXPIRE', KEYS[1], window + 60000)
+
+local count = redis.call('ZCARD', KEYS[1])
+local retryAfter = 0
+
+if count > maxAttempts then
+  -- The next attempt fits once the (count - maxAttempts + 1)th oldest entry leaves the window
+  local entry = redis.call('ZRANGE', KEYS[1], count - maxAttempts, count - maxAttempts, 'WITHSCORES')
+  if entry[2] then
+    retryAfter = math.max(0, tonumber(entry[2]) + window - now)
+  end
+end
+
+return {count, retryAfter}
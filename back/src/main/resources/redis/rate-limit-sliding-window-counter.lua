@@ -0,0 +1,14 @@
+-- Sliding window counter rate limit, executed atomically in one round-trip
+-- KEYS[1]: counter of the current fixed window, KEYS[2]: counter of the previous fixed window
+-- ARGV[1]: window (ms), ARGV[2]: attempts to add
+-- Returns {previous window count, current window count including the added attempts}
+local delta = tonumber(ARGV[2])
+local current = redis.call('INCRBY', KEYS[1], delta)
+if current == delta then
+  -- The counter is read as "previous" during the next window, so it lives for two
+  redis.call('PEXPIRE', KEYS[1], 2 * tonumber(ARGV[1]))
+end
+
+local previous = tonumber(redis.call('GET', KEYS[2]) or '0')
+
+return {previous, current}
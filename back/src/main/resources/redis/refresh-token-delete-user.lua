@@ -0,0 +1,12 @@
+-- Delete every refresh token of a user, executed atomically so a concurrent rotation can't slip a token past it
+-- KEYS[1]: user set
+-- ARGV[1]: token key prefix
+-- Returns the number of token keys deleted
+local deleted = 0
+
+for _, digest in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+  deleted = deleted + redis.call('DEL', ARGV[1] .. digest)
+end
+redis.call('DEL', KEYS[1])
+
+return deleted
@@ -0,0 +1,13 @@
+-- Delete one refresh token and drop it from its user's set, executed atomically
+-- KEYS[1]: token hash
+-- ARGV[1]: token digest (hex), ARGV[2]: user set key prefix
+-- Returns 1 if the token was deleted, 0 if it doesn't exist
+local userId = redis.call('HGET', KEYS[1], 'user_id')
+if not userId then
+  return 0
+end
+
+redis.call('DEL', KEYS[1])
+redis.call('SREM', ARGV[2] .. userId, ARGV[1])
+
+return 1
@@ -0,0 +1,23 @@
+-- Grace token of a rotated refresh token presented again right after its rotation, executed atomically
+-- KEYS[1]: rotated token hash, KEYS[2]: grace token hash
+-- ARGV[1]: grace token digest (hex), ARGV[2]: grace token expiry (ms), ARGV[3]: now (ms), ARGV[4]: user set key prefix,
+-- ARGV[5]: start of the grace window (ms)
+-- Returns the owner's email, or false if the token wasn't rotated within the window or already got its grace token
+-- The grace token is recorded on the rotated one, so each rotation yields at most one
+local token = redis.call('HMGET', KEYS[1], 'user_id', 'email', 'expiry', 'revoked', 'revoked_at', 'grace')
+local userId, email, expiry, revoked, revokedAt, grace = token[1], token[2], token[3], token[4], token[5], token[6]
+
+if not userId or revoked ~= '1' or grace or not revokedAt
+    or tonumber(revokedAt) <= tonumber(ARGV[5]) or tonumber(expiry) <= tonumber(ARGV[3]) then
+  return false
+end
+
+redis.call('HSET', KEYS[1], 'grace', ARGV[1])
+redis.call('HSET', KEYS[2], 'user_id', userId, 'email', email, 'expiry', ARGV[2], 'revoked', '0')
+redis.call('PEXPIREAT', KEYS[2], ARGV[2])
+
+local userKey = ARGV[4] .. userId
+redis.call('SADD', userKey, ARGV[1])
+redis.call('PEXPIREAT', userKey, ARGV[2])
+
+return email
@@ -0,0 +1,10 @@
+-- Flag a refresh token as revoked, without recreating it if it already expired
+-- KEYS[1]: token hash
+-- Returns 1 if the token was revoked, 0 if it doesn't exist
+if redis.call('EXISTS', KEYS[1]) == 0 then
+  return 0
+end
+
+redis.call('HSET', KEYS[1], 'revoked', '1')
+
+return 1
@@ -0,0 +1,28 @@
+-- Refresh token rotation, executed atomically in one round-trip
+-- KEYS[1]: presented token hash, KEYS[2]: replacement token hash
+-- ARGV[1]: replacement digest (hex), ARGV[2]: replacement expiry (ms), ARGV[3]: now (ms), ARGV[4]: user set key prefix,
+-- ARGV[5]: how long the presented token is kept once revoked (ms)
+-- Returns the owner's email, or false if the presented token is unknown, expired or already revoked
+-- The presented token is only flagged and kept until ARGV[5] (or its own expiry), so a reuse can still be recognized
+local token = redis.call('HMGET', KEYS[1], 'user_id', 'email', 'expiry', 'revoked')
+local userId, email, expiry, revoked = token[1], token[2], token[3], token[4]
+
+if not userId or revoked == '1' or tonumber(expiry) <= tonumber(ARGV[3]) then
+  return false
+end
+
+local revokedExpiry = ARGV[5]
+if tonumber(expiry) < tonumber(revokedExpiry) then
+  revokedExpiry = expiry
+end
+redis.call('HSET', KEYS[1], 'revoked', '1', 'revoked_at', ARGV[3], 'expiry', revokedExpiry)
+redis.call('PEXPIREAT', KEYS[1], revokedExpiry)
+redis.call('HSET', KEYS[2], 'user_id', userId, 'email', email, 'expiry', ARGV[2], 'revoked', '0')
+redis.call('PEXPIREAT', KEYS[2], ARGV[2])
+
+-- Tokens share one lifetime, so the newest one decides when the user's set can go
+local userKey = ARGV[4] .. userId
+redis.call('SADD', userKey, ARGV[1])
+redis.call('PEXPIREAT', userKey, ARGV[2])
+
+return email
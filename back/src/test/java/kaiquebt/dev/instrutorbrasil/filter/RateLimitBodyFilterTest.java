@@ -0,0 +1,76 @@
+package kaiquebt.dev.instrutorbrasil.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kaiquebt.dev.instrutorbrasil.exception.GlobalExceptionHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExceptionResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitBodyFilterTest {
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+	private RateLimitBodyFilter filter;
+
+	@BeforeEach
+	void setUp() {
+		StaticApplicationContext context = new StaticApplicationContext();
+		context.registerSingleton("globalExceptionHandler", GlobalExceptionHandler.class);
+		context.refresh();
+
+		ExceptionHandlerExceptionResolver resolver = new ExceptionHandlerExceptionResolver();
+		resolver.setApplicationContext(context);
+		resolver.setMessageConverters(List.of(new MappingJackson2HttpMessageConverter(objectMapper)));
+		resolver.afterPropertiesSet();
+
+		filter = new RateLimitBodyFilter(null, resolver, 16, 1);
+	}
+
+	@Test
+	void passesBodiesUpToTheLimit() throws Exception {
+		MockHttpServletRequest request = request("{\"email\":\"a\"}");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+
+		filter.doFilterInternal(request, response, chain);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(chain.getRequest().getInputStream().readAllBytes())
+				.isEqualTo("{\"email\":\"a\"}".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void rejectsLargerBodiesWithTheSharedErrorResponse() throws Exception {
+		MockHttpServletRequest request = request("{\"email\":\"someone@example.com\"}");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+
+		filter.doFilterInternal(request, response, chain);
+
+		assertThat(response.getStatus()).isEqualTo(413);
+		assertThat(chain.getRequest()).isNull();
+		JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+		assertThat(body.get("status").asInt()).isEqualTo(413);
+		assertThat(body.get("errorCode").asText()).isEqualTo("PAYLOAD_TOO_LARGE");
+		assertThat(body.get("path").asText()).isEqualTo("/api/auth/forgot-password");
+		assertThat(body.get("message").asText()).isEqualTo("Request body exceeds 16 bytes");
+	}
+
+	private static MockHttpServletRequest request(String body) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/forgot-password");
+		request.setContentType("application/json");
+		request.setContent(body.getBytes(StandardCharsets.UTF_8));
+		return request;
+	}
+}
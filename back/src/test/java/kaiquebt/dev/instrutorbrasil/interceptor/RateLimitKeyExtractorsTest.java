@@ -0,0 +1,49 @@
+package kaiquebt.dev.instrutorbrasil.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import kaiquebt.dev.instrutorbrasil.dto.request.ForgotPasswordRequest;
+import kaiquebt.dev.instrutorbrasil.filter.BufferedBodyRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitKeyExtractorsTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Function<HttpServletRequest, String> emailKey =
+			new RateLimitKeyExtractors(objectMapper).forType(RateLimit.KeyType.EMAIL);
+
+	@Test
+	void readsTopLevelEmail() {
+		assertThat(emailKey.apply(body("{\"profile\":{\"email\":\"nested@x\"},\"email\":\"user@x\"}"))).isEqualTo("user@x");
+	}
+
+	@Test
+	void duplicateEmailIsKeyedOnTheValueTheControllerBinds() throws Exception {
+		String json = "{\"email\":\"junk-1@x\",\"email\":\"victim@x\"}";
+
+		String bound = objectMapper.readValue(json, ForgotPasswordRequest.class).getEmail();
+
+		assertThat(bound).isEqualTo("victim@x");
+		assertThat(emailKey.apply(body(json))).isEqualTo(bound);
+	}
+
+	@Test
+	void nonStringEmailHasNoKey() {
+		assertThat(emailKey.apply(body("{\"email\":\"user@x\",\"email\":{\"a\":1}}"))).isNull();
+		assertThat(emailKey.apply(body("[\"user@x\"]"))).isNull();
+	}
+
+	private static HttpServletRequest body(String json) {
+		byte[] content = json.getBytes(StandardCharsets.UTF_8);
+		byte[] buffer = new byte[content.length + 16];
+		System.arraycopy(content, 0, buffer, 0, content.length);
+		return new BufferedBodyRequest(new MockHttpServletRequest(), buffer, content.length);
+	}
+}
@@ -0,0 +1,245 @@
+package kaiquebt.dev.instrutorbrasil.loadtest;
+
+import kaiquebt.dev.instrutorbrasil.controller.AuthController;
+import kaiquebt.dev.instrutorbrasil.controller.OnboardingController;
+import kaiquebt.dev.instrutorbrasil.dto.response.AuthResponse;
+import kaiquebt.dev.instrutorbrasil.dto.response.MessageResponse;
+import kaiquebt.dev.instrutorbrasil.exception.GlobalExceptionHandler;
+import kaiquebt.dev.instrutorbrasil.model.enums.Role;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
+import kaiquebt.dev.instrutorbrasil.service.AuthService;
+import kaiquebt.dev.instrutorbrasil.service.OnboardingService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ActiveProfilesResolver;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test for the virtual-threads profile, skipped unless -Dloadtest=true
+ * Runs the real controllers on an embedded Tomcat, with AuthService and OnboardingService stubbed to block
+ * for loadtest.latency-ms the way a Postgres query or an S3 HEAD would, so the request threads are the limit
+ *
+ * Platform threads (Tomcat's 200-thread pool):
+ *   ./mvnw test -Dtest=VirtualThreadsLoadTest -Dloadtest=true
+ * Virtual threads, with the virtual-threads profile as deployed (application-virtual-threads.yml):
+ *   ./mvnw test -Dtest=VirtualThreadsLoadTest -Dloadtest=true -Dloadtest.virtual=true
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = VirtualThreadsLoadTest.LoadTestConfig.class)
+@ActiveProfiles(resolver = VirtualThreadsLoadTest.LoadTestProfiles.class)
+class VirtualThreadsLoadTest {
+
+	private static final String TOKEN = "load-test";
+
+	private final int clients = Integer.getInteger("loadtest.clients", 1000);
+	private final int requests = Integer.getInteger("loadtest.requests", 10000);
+	private final long latencyMillis = Long.getLong("loadtest.latency-ms", 50);
+
+	@LocalServerPort
+	private int port;
+
+	@MockitoBean
+	private AuthService authService;
+
+	@MockitoBean
+	private OnboardingService onboardingService;
+
+	@BeforeEach
+	void stubBackends() {
+		when(authService.login(any())).thenAnswer(invocation -> {
+			Thread.sleep(latencyMillis);
+			return AuthResponse.builder()
+					.accessToken("access")
+					.refreshToken("refresh")
+					.tokenType("Bearer")
+					.expiresIn(900L)
+					.build();
+		});
+		when(onboardingService.confirmUpload(any(), anyLong(), any())).thenAnswer(invocation -> {
+			Thread.sleep(latencyMillis);
+			return new MessageResponse("Upload confirmed");
+		});
+	}
+
+	@Test
+	void login() throws Exception {
+		run("POST /auth/login", id -> HttpRequest.newBuilder(uri("/auth/login"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(
+						"{\"email\":\"user" + id + "@example.com\",\"password\":\"password\"}"))
+				.build());
+	}
+
+	@Test
+	void confirmUpload() throws Exception {
+		run("POST /instructor/onboarding/documents/{id}/confirm", id -> HttpRequest.newBuilder(
+						uri("/instructor/onboarding/documents/" + id + "/confirm"))
+				.header("Content-Type", "application/json")
+				.header("Authorization", "Bearer " + TOKEN)
+				.POST(HttpRequest.BodyPublishers.ofString(
+						"{\"originalFilename\":\"cnh.pdf\",\"mimeType\":\"application/pdf\"}"))
+				.build());
+	}
+
+	/**
+	 * Send the requests from up to loadtest.clients concurrent clients and print throughput and latency percentiles
+	 */
+	private void run(String endpoint, RequestFactory factory) throws Exception {
+		HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(10))
+				.build();
+		Semaphore inFlight = new Semaphore(clients);
+		AtomicInteger failures = new AtomicInteger();
+		long[] latencies = new long[requests];
+
+		long start = System.nanoTime();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < requests; i++) {
+				int id = i;
+				inFlight.acquire();
+				executor.execute(() -> {
+					long sent = System.nanoTime();
+					try {
+						HttpResponse<Void> response = client.send(factory.create(id), HttpResponse.BodyHandlers.discarding());
+						if (response.statusCode() != 200) {
+							failures.incrementAndGet();
+						}
+					} catch (IOException | InterruptedException e) {
+						failures.incrementAndGet();
+					} finally {
+						latencies[id] = System.nanoTime() - sent;
+						inFlight.release();
+					}
+				});
+			}
+		}
+		long elapsedNanos = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		System.out.printf("%s - %s threads, %d clients, %d requests, %d ms backend latency%n",
+				endpoint, Boolean.getBoolean("loadtest.virtual") ? "virtual" : "platform", clients, requests, latencyMillis);
+		System.out.printf("  throughput %.0f req/s, p50 %d ms, p99 %d ms, max %d ms, failures %d%n",
+				requests / (elapsedNanos / 1e9),
+				percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1_000_000,
+				failures.get());
+
+		assertThat(failures.get()).isZero();
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1_000_000;
+	}
+
+	@FunctionalInterface
+	private interface RequestFactory {
+		HttpRequest create(int id);
+	}
+
+	/**
+	 * The virtual-threads profile when -Dloadtest.virtual=true, none otherwise
+	 */
+	static class LoadTestProfiles implements ActiveProfilesResolver {
+
+		@Override
+		public String[] resolve(Class<?> testClass) {
+			return Boolean.getBoolean("loadtest.virtual") ? new String[] {"virtual-threads"} : new String[0];
+		}
+	}
+
+	/**
+	 * Only the web layer: the two controllers, the exception handler and a security chain that accepts
+	 * a fixed bearer token, no database, Redis or OAuth2 client
+	 */
+	@Configuration
+	@EnableAutoConfiguration(exclude = {
+			DataSourceAutoConfiguration.class,
+			HibernateJpaAutoConfiguration.class,
+			JpaRepositoriesAutoConfiguration.class,
+			RedisAutoConfiguration.class,
+			RedisRepositoriesAutoConfiguration.class,
+			OAuth2ClientAutoConfiguration.class
+	})
+	@Import({AuthController.class, OnboardingController.class, GlobalExceptionHandler.class})
+	static class LoadTestConfig {
+
+		@Bean
+		SecurityFilterChain loadTestSecurityFilterChain(HttpSecurity http) throws Exception {
+			http
+					.csrf(AbstractHttpConfigurer::disable)
+					.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+					.authorizeHttpRequests(auth -> auth
+							.requestMatchers("/auth/**").permitAll()
+							.anyRequest().authenticated())
+					.addFilterBefore(new StubTokenFilter(), AnonymousAuthenticationFilter.class);
+			return http.build();
+		}
+	}
+
+	/**
+	 * Stands in for JwtAuthenticationFilter, any request with the fixed token is authenticated as the same instructor
+	 */
+	private static class StubTokenFilter extends OncePerRequestFilter {
+
+		private static final AuthenticatedUser INSTRUCTOR = new AuthenticatedUser(
+				1L, "instructor@example.com", "Instructor", Set.of(Role.USER, Role.INSTRUCTOR), true, true);
+
+		@Override
+		protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+				throws ServletException, IOException {
+			if (("Bearer " + TOKEN).equals(request.getHeader("Authorization"))) {
+				SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+						INSTRUCTOR, null, INSTRUCTOR.getAuthorities()));
+			}
+			chain.doFilter(request, response);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package kaiquebt.dev.instrutorbrasil.security.jwt;
+
+import kaiquebt.dev.instrutorbrasil.model.enums.Role;
+import kaiquebt.dev.instrutorbrasil.security.AuthenticatedUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU per request spent validating the access token in JwtAuthenticationFilter
+ * - tripleParse: the previous filter, extractEmail, then validateToken's own extractEmail and isTokenExpired,
+ *   each verifying and parsing the token again
+ * - singleParse: parseToken once and validate the parsed claims, as the filter does now
+ *
+ * Run after ./mvnw test-compile:
+ *   ./mvnw dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main JwtParseBenchmark
+ * Add -prof gc for the allocation per request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtParseBenchmark {
+
+	private JwtService jwtService;
+	private AuthenticatedUser user;
+	private String token;
+
+	@Setup
+	public void setup() {
+		JwtKeyRing keyRing = new JwtKeyRing();
+		ReflectionTestUtils.setField(keyRing, "jwtSecret", "c2VjcmV0LWtleS1mb3ItYmVuY2htYXJraW5nLWp3dC1wYXJzaW5nLW9ubHk=");
+		ReflectionTestUtils.setField(keyRing, "jwtKeyId", "primary");
+		ReflectionTestUtils.setField(keyRing, "previousKeys", "");
+		ReflectionTestUtils.setField(keyRing, "maxVerificationKeys", 3);
+		ReflectionTestUtils.setField(keyRing, "legacyKeyId", "primary");
+		keyRing.init();
+
+		jwtService = new JwtService(keyRing);
+		ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 900000L);
+		ReflectionTestUtils.setField(jwtService, "refreshTokenExpiration", 2592000000L);
+		jwtService.init();
+
+		user = new AuthenticatedUser(42L, "maria@instrutorbrasil.com.br", "Maria da Silva",
+				Set.of(Role.USER, Role.INSTRUCTOR), true, true);
+		token = jwtService.generateAccessToken(user);
+	}
+
+	@Benchmark
+	public boolean tripleParse() {
+		String email = jwtService.extractEmail(token);
+		return email != null
+				&& jwtService.extractEmail(token).equals(user.getUsername())
+				&& !jwtService.isTokenExpired(token);
+	}
+
+	@Benchmark
+	public boolean singleParse() {
+		ParsedToken parsed = jwtService.parseToken(token);
+		return parsed.subject() != null && jwtService.validateToken(parsed, user);
+	}
+}
@@ -0,0 +1,85 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold vs warm render time of each email template
+ * - cold: the template is resolved and parsed on every render, as with spring.thymeleaf.cache=false before
+ *   EmailTemplateRenderer existed
+ * - warm: EmailTemplateRenderer, parsed once at startup and rendered into a reused buffer
+ *
+ * Run after ./mvnw test-compile:
+ *   ./mvnw dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main EmailTemplateRendererBenchmark
+ * Add -prof gc for the allocation per render
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailTemplateRendererBenchmark {
+
+	@Param({"email/welcome", "email/password-reset", "email/password-reset-confirmation", "email/email-verification"})
+	private String template;
+
+	private final Map<String, Object> variables = Map.of(
+			"name", "Maria da Silva",
+			"resetLink", "https://instrutorbrasil.com.br/reset-password?token=3q2-7wEjRrW0pLkYxZbC9dVfGhJmNsTu1oIiAaBbCcD",
+			"verificationLink", "https://instrutorbrasil.com.br/verify-email?token=3q2-7wEjRrW0pLkYxZbC9dVfGhJmNsTu1oIiAaBbCcD",
+			"expirationTime", "24 hours");
+
+	private SpringTemplateEngine uncachedEngine;
+	private EmailTemplateRenderer renderer;
+
+	@Setup
+	public void setup() {
+		ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+		resolver.setPrefix("templates/");
+		resolver.setSuffix(".html");
+		resolver.setTemplateMode(TemplateMode.HTML);
+		resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		resolver.setCacheable(false);
+
+		uncachedEngine = new SpringTemplateEngine();
+		uncachedEngine.setTemplateResolver(resolver);
+
+		renderer = new EmailTemplateRenderer(new SimpleMeterRegistry());
+		renderer.preload();
+	}
+
+	@Benchmark
+	public String cold() {
+		Context context = new Context();
+		context.setVariables(variables);
+		StringWriter writer = new StringWriter();
+		uncachedEngine.process(template, context, writer);
+		return writer.toString();
+	}
+
+	@Benchmark
+	public String warm() {
+		return renderer.render(template, variables);
+	}
+}
@@ -0,0 +1,166 @@
+package kaiquebt.dev.instrutorbrasil.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailDeliveryServiceTest {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private MailDeliveryService service;
+
+	@AfterEach
+	void shutdown() {
+		if (service != null) {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	void sendsBatchesOverPooledConnections() throws Exception {
+		service = newService(2, 100, 10000);
+
+		assertThat(service.send(messages(10))).isEmpty();
+		assertThat(service.send(messages(10))).isEmpty();
+
+		assertThat(greenMail.getReceivedMessages()).hasSize(20);
+		// Both batches went over the same two connections
+		assertThat(connects()).isEqualTo(2);
+	}
+
+	@Test
+	void reconnectsAfterIdleConnectionWasDropped() throws Exception {
+		service = newService(1, 100, 10000);
+		assertThat(service.send(messages(1))).isEmpty();
+
+		// Server restart drops the pooled connection, and the messages received so far
+		greenMail.reset();
+
+		assertThat(service.send(messages(2))).isEmpty();
+		assertThat(greenMail.getReceivedMessages()).hasSize(2);
+		assertThat(connects()).isEqualTo(2);
+	}
+
+	@Test
+	void reconnectsWhenConnectionDropsMidBatch() throws Exception {
+		service = newService(1, 100, 10000);
+		List<MimeMessage> batch = messages(3);
+		batch.set(1, new DroppingMessage(batch.get(1)));
+
+		Map<MimeMessage, Exception> failures = service.send(batch);
+
+		assertThat(failures).isEmpty();
+		// The first message was received before the restart, the second was retried on a new connection
+		assertThat(greenMail.getReceivedMessages()).hasSize(2);
+		assertThat(connects()).isEqualTo(2);
+	}
+
+	@Test
+	void replacesConnectionAfterMessageCap() throws Exception {
+		service = newService(1, 3, 10000);
+
+		assertThat(service.send(messages(7))).isEmpty();
+
+		assertThat(greenMail.getReceivedMessages()).hasSize(7);
+		assertThat(connects()).isEqualTo(3);
+	}
+
+	@Test
+	void failsMessagesNotSentWithinBatchTimeout() throws Exception {
+		service = newService(1, 100, 500);
+		List<MimeMessage> batch = messages(3);
+		batch.set(1, new StalledMessage(batch.get(1)));
+
+		Map<MimeMessage, Exception> failures = service.send(batch);
+
+		assertThat(failures).containsOnlyKeys(batch.get(1), batch.get(2));
+		assertThat(greenMail.getReceivedMessages()).hasSize(1);
+	}
+
+	private MailDeliveryService newService(int poolSize, int maxMessagesPerConnection, long batchTimeoutMillis) {
+		JavaMailSenderImpl sender = new JavaMailSenderImpl();
+		sender.setHost(ServerSetupTest.SMTP.getBindAddress());
+		sender.setPort(ServerSetupTest.SMTP.getPort());
+		Properties properties = new Properties();
+		properties.put("mail.smtp.connectiontimeout", "5000");
+		properties.put("mail.smtp.timeout", "5000");
+		properties.put("mail.smtp.writetimeout", "5000");
+		sender.setJavaMailProperties(properties);
+		return new MailDeliveryService(sender, meterRegistry, poolSize, maxMessagesPerConnection, 60000, batchTimeoutMillis);
+	}
+
+	private List<MimeMessage> messages(int count) throws MessagingException {
+		List<MimeMessage> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			MimeMessage message = service.createMimeMessage();
+			message.setFrom(new InternetAddress("noreply@instrutorbrasil.test"));
+			message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress("user" + i + "@instrutorbrasil.test"));
+			message.setSubject("Message " + i);
+			message.setText("Body " + i);
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	private long connects() {
+		return meterRegistry.get("mail.delivery.connect").timer().count();
+	}
+
+	/**
+	 * Restarts the server the first time it is about to be sent, dropping the connection in use
+	 */
+	private static class DroppingMessage extends MimeMessage {
+		private boolean dropped;
+
+		DroppingMessage(MimeMessage source) throws MessagingException {
+			super(source);
+		}
+
+		@Override
+		public void saveChanges() throws MessagingException {
+			if (!dropped) {
+				dropped = true;
+				greenMail.reset();
+			}
+			super.saveChanges();
+		}
+	}
+
+	/**
+	 * Blocks like a stalled server until the batch is cancelled
+	 */
+	private static class StalledMessage extends MimeMessage {
+
+		StalledMessage(MimeMessage source) throws MessagingException {
+			super(source);
+		}
+
+		@Override
+		public void saveChanges() throws MessagingException {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException("Interrupted", e);
+			}
+			super.saveChanges();
+		}
+	}
+}
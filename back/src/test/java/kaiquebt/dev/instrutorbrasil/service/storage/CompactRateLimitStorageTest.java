@@ -0,0 +1,44 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactRateLimitStorageTest {
+
+	// Eight slots, every key probes the whole table
+	private final CompactRateLimitStorage storage = new CompactRateLimitStorage(8);
+
+	@Test
+	void limitsAKey() {
+		for (int i = 1; i <= 3; i++) {
+			assertThat(storage.recordAttempt(spec("10.0.0.1")).attempts()).isEqualTo(i);
+		}
+		AttemptResult denied = storage.recordAttempt(spec("10.0.0.1"));
+		assertThat(denied.attempts()).isEqualTo(4);
+		assertThat(denied.retryAfterSeconds()).isPositive();
+	}
+
+	@Test
+	void fullTableEvictsInsteadOfRefusingNewKeys() {
+		for (int i = 0; i < 8; i++) {
+			storage.recordAttempt(spec("10.0.0." + i));
+		}
+
+		// A flood of made-up keys still lets a new caller in, at the cost of older keys
+		for (int i = 0; i < 100; i++) {
+			assertThat(storage.recordAttempt(spec("spoofed-" + i)).attempts()).isEqualTo(1);
+		}
+		AttemptResult newCaller = storage.recordAttempt(spec("192.168.0.1"));
+
+		assertThat(newCaller.attempts()).isEqualTo(1);
+		assertThat(newCaller.retryAfterSeconds()).isZero();
+		assertThat(storage.getEvictionCount()).isEqualTo(101);
+		assertThat(storage.getKeyCount()).isEqualTo(8);
+	}
+
+	private static LimitSpec spec(String key) {
+		return new LimitSpec(key, 3, 60, RateLimit.Algorithm.SLIDING_WINDOW_COUNTER);
+	}
+}
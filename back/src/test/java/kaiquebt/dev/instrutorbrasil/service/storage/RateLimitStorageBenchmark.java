@@ -0,0 +1,70 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of recordAttempt on the in-process storages, MEMORY against COMPACT
+ * Attempts are spread over a fixed set of keys, bot traffic is a key set larger than the compact table,
+ * so COMPACT keeps evicting while MEMORY keeps growing
+ *
+ * Run after ./mvnw test-compile:
+ *   ./mvnw dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main RateLimitStorageBenchmark
+ * Add -prof gc for the allocation per attempt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RateLimitStorageBenchmark {
+
+	private static final int COMPACT_MAX_KEYS = 65536;
+
+	@Param({"MEMORY", "COMPACT"})
+	private String storageType;
+
+	@Param({"SLIDING_WINDOW_COUNTER", "GCRA"})
+	private RateLimit.Algorithm algorithm;
+
+	@Param({"1000", "1000000"})
+	private int keyCount;
+
+	private RateLimitStorage storage;
+	private LimitSpec[] specs;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		storage = storageType.equals("COMPACT")
+				? new CompactRateLimitStorage(COMPACT_MAX_KEYS)
+				: new InMemoryRateLimitStorage();
+
+		specs = new LimitSpec[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			specs[i] = new LimitSpec("10." + (i >>> 16) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff), 5, 60, algorithm);
+		}
+	}
+
+	@Benchmark
+	public AttemptResult recordAttempt() {
+		return storage.recordAttempt(specs[ThreadLocalRandom.current().nextInt(specs.length)]);
+	}
+}
@@ -0,0 +1,116 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the rate limit Lua scripts against a real Redis server started in-process
+ */
+class RedisRateLimitStorageTest {
+
+	private static RedisServer redisServer;
+	private static LettuceConnectionFactory connectionFactory;
+	private static RedisRateLimitStorage storage;
+
+	@BeforeAll
+	static void startRedis() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		redisServer = new RedisServer(port);
+		redisServer.start();
+
+		connectionFactory = new LettuceConnectionFactory("localhost", port);
+		connectionFactory.afterPropertiesSet();
+		connectionFactory.start();
+		storage = new RedisRateLimitStorage(new StringRedisTemplate(connectionFactory));
+		storage.validateConnection();
+	}
+
+	@AfterAll
+	static void stopRedis() throws IOException {
+		if (connectionFactory != null) {
+			connectionFactory.destroy();
+		}
+		if (redisServer != null) {
+			redisServer.stop();
+		}
+	}
+
+	@BeforeEach
+	void flush() {
+		connectionFactory.getConnection().serverCommands().flushAll();
+	}
+
+	@ParameterizedTest
+	@EnumSource(RateLimit.Algorithm.class)
+	void allowsUpToTheLimitThenDeniesWithRetryAfter(RateLimit.Algorithm algorithm) {
+		LimitSpec spec = new LimitSpec("10.0.0.1", 3, 60, algorithm);
+
+		for (int i = 1; i <= 3; i++) {
+			AttemptResult allowed = storage.recordAttempt(spec);
+			assertThat(allowed.attempts()).isEqualTo(i);
+			assertThat(allowed.retryAfterSeconds()).isZero();
+		}
+
+		AttemptResult denied = storage.recordAttempt(spec);
+		assertThat(denied.attempts()).isGreaterThan(3);
+		// A counter's attempts still weigh through the following fixed window, so it may wait up to two windows
+		assertThat(denied.retryAfterSeconds()).isBetween(1L, 120L);
+		assertThat(storage.getAttemptCount(spec)).isGreaterThanOrEqualTo(3);
+	}
+
+	@ParameterizedTest
+	@EnumSource(RateLimit.Algorithm.class)
+	void keysAreCountedSeparately(RateLimit.Algorithm algorithm) {
+		LimitSpec first = new LimitSpec("first@example.com", 1, 60, algorithm);
+		LimitSpec second = new LimitSpec("second@example.com", 1, 60, algorithm);
+
+		assertThat(storage.recordAttempt(first).attempts()).isEqualTo(1);
+		assertThat(storage.recordAttempt(second).attempts()).isEqualTo(1);
+		assertThat(storage.recordAttempt(first).retryAfterSeconds()).isPositive();
+	}
+
+	@Test
+	void gcraRetryAfterIsOneEmissionInterval() {
+		// 3 per 60s is one attempt every 20s, the denied attempt waits for the oldest to drain
+		LimitSpec spec = new LimitSpec("10.0.0.2", 3, 60, RateLimit.Algorithm.GCRA);
+		for (int i = 0; i < 3; i++) {
+			storage.recordAttempt(spec);
+		}
+
+		assertThat(storage.recordAttempt(spec).retryAfterSeconds()).isBetween(19L, 20L);
+	}
+
+	@ParameterizedTest
+	@EnumSource(RateLimit.Algorithm.class)
+	void batchIsPipelinedAndDecodesEveryReply(RateLimit.Algorithm algorithm) {
+		LimitSpec ip = new LimitSpec("10.0.0.3", 2, 60, algorithm);
+		LimitSpec email = new LimitSpec("user@example.com", 1, 60, algorithm);
+
+		assertThat(storage.recordAttempts(List.of(ip, email)))
+				.extracting(AttemptResult::attempts)
+				.containsExactly(1, 1);
+
+		List<AttemptResult> second = storage.recordAttempts(List.of(ip, email));
+		assertThat(second.get(0).attempts()).isEqualTo(2);
+		assertThat(second.get(0).retryAfterSeconds()).isZero();
+		assertThat(second.get(1).attempts()).isGreaterThan(1);
+		assertThat(second.get(1).retryAfterSeconds()).isPositive();
+	}
+}
@@ -0,0 +1,109 @@
+package kaiquebt.dev.instrutorbrasil.service.storage;
+
+import kaiquebt.dev.instrutorbrasil.annotation.RateLimit;
+import kaiquebt.dev.instrutorbrasil.config.RateLimitResilienceProperties;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Background calls through the circuit breaker, against a real Redis server started in-process
+ */
+class ResilientRateLimitStorageTest {
+
+	private static RedisServer redisServer;
+	private static LettuceConnectionFactory connectionFactory;
+	private static StringRedisTemplate redisTemplate;
+
+	@BeforeAll
+	static void startRedis() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		redisServer = new RedisServer(port);
+		redisServer.start();
+
+		connectionFactory = new LettuceConnectionFactory("localhost", port);
+		connectionFactory.afterPropertiesSet();
+		connectionFactory.start();
+		redisTemplate = new StringRedisTemplate(connectionFactory);
+	}
+
+	@AfterAll
+	static void stopRedis() throws IOException {
+		if (connectionFactory != null) {
+			connectionFactory.destroy();
+		}
+		if (redisServer != null) {
+			redisServer.stop();
+		}
+	}
+
+	@BeforeEach
+	void flush() {
+		connectionFactory.getConnection().serverCommands().flushAll();
+	}
+
+	@Test
+	void hybridFlushIsSkippedWhileTheCircuitIsOpen() throws InterruptedException {
+		HybridRateLimitStorage hybrid = new HybridRateLimitStorage(redisTemplate, 0.5);
+		ResilientRateLimitStorage storage = new ResilientRateLimitStorage(hybrid, properties(300, 500));
+		storage.recordAttempt(new LimitSpec("10.0.0.1", 100, 60, RateLimit.Algorithm.SLIDING_WINDOW_COUNTER));
+
+		assertThatThrownBy(() -> storage.callInBackground(() -> {
+			throw new IllegalStateException("Redis down");
+		})).isInstanceOf(IllegalStateException.class);
+		assertThat(storage.getState()).isEqualTo(ResilientRateLimitStorage.State.OPEN);
+
+		hybrid.flush();
+		assertThat(redisTemplate.keys("rate_limit:*")).isEmpty();
+
+		// Once open-millis is over the next flush is the probe, and sends the delta it kept
+		Thread.sleep(400);
+		hybrid.flush();
+		assertThat(storage.getState()).isEqualTo(ResilientRateLimitStorage.State.CLOSED);
+		Set<String> keys = redisTemplate.keys("rate_limit:*");
+		assertThat(keys).hasSize(1);
+		assertThat(redisTemplate.opsForValue().get(keys.iterator().next())).isEqualTo("1");
+	}
+
+	@Test
+	void backgroundCallsPastTheTimeoutOpenTheCircuit() {
+		ResilientRateLimitStorage storage = new ResilientRateLimitStorage(new InMemoryRateLimitStorage(), properties(60000, 50));
+
+		assertThatThrownBy(() -> storage.callInBackground(() -> {
+			try {
+				Thread.sleep(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		})).hasMessageContaining("timed out");
+		assertThat(storage.getState()).isEqualTo(ResilientRateLimitStorage.State.OPEN);
+
+		AtomicInteger calls = new AtomicInteger();
+		assertThat(storage.callInBackground(calls::incrementAndGet)).isFalse();
+		assertThat(calls).hasValue(0);
+	}
+
+	private static RateLimitResilienceProperties properties(long openMillis, long timeoutMillis) {
+		RateLimitResilienceProperties properties = new RateLimitResilienceProperties();
+		properties.setFailureThreshold(1);
+		properties.setOpenMillis(openMillis);
+		properties.setTimeoutMillis(timeoutMillis);
+		properties.setSlowCallMillis(timeoutMillis);
+		return properties;
+	}
+}
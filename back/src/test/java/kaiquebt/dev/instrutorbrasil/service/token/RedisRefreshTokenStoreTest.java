@@ -0,0 +1,86 @@
+package kaiquebt.dev.instrutorbrasil.service.token;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the refresh token scripts against a real Redis server started in-process
+ */
+class RedisRefreshTokenStoreTest {
+
+	private static final byte[] FIRST = new byte[] {1, 2, 3};
+	private static final byte[] SECOND = new byte[] {4, 5, 6};
+
+	private static RedisServer redisServer;
+	private static LettuceConnectionFactory connectionFactory;
+	private static StringRedisTemplate redisTemplate;
+	private static RedisRefreshTokenStore store;
+
+	@BeforeAll
+	static void startRedis() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		redisServer = new RedisServer(port);
+		redisServer.start();
+
+		connectionFactory = new LettuceConnectionFactory("localhost", port);
+		connectionFactory.afterPropertiesSet();
+		connectionFactory.start();
+		redisTemplate = new StringRedisTemplate(connectionFactory);
+		store = new RedisRefreshTokenStore(redisTemplate);
+	}
+
+	@AfterAll
+	static void stopRedis() throws IOException {
+		if (connectionFactory != null) {
+			connectionFactory.destroy();
+		}
+		if (redisServer != null) {
+			redisServer.stop();
+		}
+	}
+
+	@BeforeEach
+	void flush() {
+		connectionFactory.getConnection().serverCommands().flushAll();
+	}
+
+	@Test
+	void deleteRemovesTheTokenAndItsEntryInTheUserSet() {
+		Instant expiry = Instant.now().plus(1, ChronoUnit.DAYS);
+		store.save(7L, "user@example.com", FIRST, expiry);
+		store.save(7L, "user@example.com", SECOND, expiry);
+
+		store.delete(FIRST);
+
+		assertThat(store.find(FIRST)).isEmpty();
+		assertThat(store.find(SECOND)).isPresent();
+		assertThat(redisTemplate.opsForSet().members("refresh_token:user:7"))
+				.containsExactly(HexFormat.of().formatHex(SECOND));
+	}
+
+	@Test
+	void deleteOfAnUnknownTokenLeavesTheOthersAlone() {
+		store.save(7L, "user@example.com", SECOND, Instant.now().plus(1, ChronoUnit.DAYS));
+
+		store.delete(FIRST);
+
+		assertThat(redisTemplate.hasKey("refresh_token:" + HexFormat.of().formatHex(FIRST))).isFalse();
+		assertThat(redisTemplate.opsForSet().size("refresh_token:user:7")).isEqualTo(1);
+	}
+}